@@ -0,0 +1,341 @@
+package gr.nikolis.gpslib;
+
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Allocation free geodesy helpers.
+ * All coordinates are in degrees, all distances in meters and all bearings in degrees [0, 360).
+ * <p>
+ * The scalar methods replace {@link Location#distanceBetween(double, double, double, double, float[])}
+ * which allocates a float[] on every call. The batch methods work on plain double[] arrays
+ * (one array per coordinate component) with simple counted loops, so the JIT can unroll
+ * and, where only arithmetic and sqrt are involved, vectorize them.
+ */
+public final class Geodesy {
+
+    /**
+     * Mean earth radius (IUGG) in meters, used by the spherical formulas
+     */
+    public static final double EARTH_RADIUS = 6371008.8;
+
+    /**
+     * Empirical coefficient of the equirectangular error bound, valid for |latitude| <= 80
+     */
+    private static final double EQUIRECTANGULAR_ERROR_COEFFICIENT = 4e-14;
+
+    //WGS84 ellipsoid, used by vincenty
+    private static final double WGS84_A = 6378137.0;
+    private static final double WGS84_F = 1 / 298.257223563;
+    private static final double WGS84_B = WGS84_A * (1 - WGS84_F);
+    private static final int VINCENTY_MAX_ITERATIONS = 200;
+
+    private static final double DEG_TO_RAD = Math.PI / 180.0;
+    private static final double RAD_TO_DEG = 180.0 / Math.PI;
+
+    private Geodesy() {
+    }
+
+    /**
+     * Great circle distance on a sphere.
+     * Compared to the WGS84 ellipsoid (vincenty) the error stays below 0.6%.
+     *
+     * @return The distance in meters
+     */
+    public static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = lat1 * DEG_TO_RAD;
+        double phi2 = lat2 * DEG_TO_RAD;
+        double sinDPhi = Math.sin((phi2 - phi1) * 0.5);
+        double sinDLambda = Math.sin((lon2 - lon1) * DEG_TO_RAD * 0.5);
+        double h = sinDPhi * sinDPhi + Math.cos(phi1) * Math.cos(phi2) * sinDLambda * sinDLambda;
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1.0, Math.sqrt(h)));
+    }
+
+    /**
+     * Equirectangular (flat earth at the mean latitude) distance.
+     * Roughly 5 times cheaper than {@link #haversine(double, double, double, double)},
+     * its deviation from it is bounded by {@link #equirectangularErrorBound(double)}.
+     *
+     * @return The distance in meters
+     */
+    public static double equirectangular(double lat1, double lon1, double lat2, double lon2) {
+        double x = wrapLongitude(lon2 - lon1) * DEG_TO_RAD * Math.cos((lat1 + lat2) * 0.5 * DEG_TO_RAD);
+        double y = (lat2 - lat1) * DEG_TO_RAD;
+        return EARTH_RADIUS * Math.sqrt(x * x + y * y);
+    }
+
+    /**
+     * Upper bound of |equirectangular - haversine| for latitudes up to 80 degrees.
+     * The error grows with the cube of the distance: ~4cm at 10km, ~40m at 100km.
+     *
+     * @param distance The (approximate) distance in meters
+     * @return The maximum absolute error in meters
+     */
+    public static double equirectangularErrorBound(double distance) {
+        return EQUIRECTANGULAR_ERROR_COEFFICIENT * distance * distance * distance;
+    }
+
+    /**
+     * Uses the equirectangular approximation when its error bound is below the given tolerance
+     * and falls back to haversine otherwise.
+     *
+     * @param tolerance The acceptable error in meters
+     * @return The distance in meters
+     */
+    public static double distance(double lat1, double lon1, double lat2, double lon2, double tolerance) {
+        double approximate = equirectangular(lat1, lon1, lat2, lon2);
+        if (Math.abs(lat1) <= 80 && Math.abs(lat2) <= 80 && equirectangularErrorBound(approximate) <= tolerance)
+            return approximate;
+        return haversine(lat1, lon1, lat2, lon2);
+    }
+
+    /**
+     * Haversine distance between two locations, without the float[] of {@link Location#distanceTo(Location)}
+     *
+     * @return The distance in meters
+     */
+    public static double distance(@NonNull Location from, @NonNull Location to) {
+        return haversine(from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude());
+    }
+
+    /**
+     * Initial great circle bearing
+     *
+     * @return The bearing in degrees [0, 360)
+     */
+    public static double bearing(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = lat1 * DEG_TO_RAD;
+        double phi2 = lat2 * DEG_TO_RAD;
+        double dLambda = (lon2 - lon1) * DEG_TO_RAD;
+        double cosPhi2 = Math.cos(phi2);
+        double y = Math.sin(dLambda) * cosPhi2;
+        double x = Math.cos(phi1) * Math.sin(phi2) - Math.sin(phi1) * cosPhi2 * Math.cos(dLambda);
+        return normalizeBearing(Math.atan2(y, x) * RAD_TO_DEG);
+    }
+
+    /**
+     * Vincenty inverse formula on the WGS84 ellipsoid.
+     * Accurate to less than a millimeter but iterative, so use it as a reference and not in hot loops.
+     *
+     * @return The distance in meters, or NaN if the formula does not converge (nearly antipodal points)
+     */
+    public static double vincenty(double lat1, double lon1, double lat2, double lon2) {
+        double l = wrapLongitude(lon2 - lon1) * DEG_TO_RAD;
+        double u1 = Math.atan((1 - WGS84_F) * Math.tan(lat1 * DEG_TO_RAD));
+        double u2 = Math.atan((1 - WGS84_F) * Math.tan(lat2 * DEG_TO_RAD));
+        double sinU1 = Math.sin(u1), cosU1 = Math.cos(u1);
+        double sinU2 = Math.sin(u2), cosU2 = Math.cos(u2);
+
+        double lambda = l, lambdaP;
+        double sinSigma, cosSigma, sigma, cosSqAlpha, cos2SigmaM;
+        int iterations = VINCENTY_MAX_ITERATIONS;
+        do {
+            double sinLambda = Math.sin(lambda), cosLambda = Math.cos(lambda);
+            double a = cosU2 * sinLambda;
+            double b = cosU1 * sinU2 - sinU1 * cosU2 * cosLambda;
+            sinSigma = Math.sqrt(a * a + b * b);
+            if (sinSigma == 0)
+                return 0; // coincident points
+            cosSigma = sinU1 * sinU2 + cosU1 * cosU2 * cosLambda;
+            sigma = Math.atan2(sinSigma, cosSigma);
+            double sinAlpha = cosU1 * cosU2 * sinLambda / sinSigma;
+            cosSqAlpha = 1 - sinAlpha * sinAlpha;
+            cos2SigmaM = cosSqAlpha != 0 ? cosSigma - 2 * sinU1 * sinU2 / cosSqAlpha : 0; // equatorial line
+            double c = WGS84_F / 16 * cosSqAlpha * (4 + WGS84_F * (4 - 3 * cosSqAlpha));
+            lambdaP = lambda;
+            lambda = l + (1 - c) * WGS84_F * sinAlpha
+                    * (sigma + c * sinSigma * (cos2SigmaM + c * cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)));
+        } while (Math.abs(lambda - lambdaP) > 1e-12 && --iterations > 0);
+
+        if (iterations == 0)
+            return Double.NaN;
+
+        double uSq = cosSqAlpha * (WGS84_A * WGS84_A - WGS84_B * WGS84_B) / (WGS84_B * WGS84_B);
+        double a = 1 + uSq / 16384 * (4096 + uSq * (-768 + uSq * (320 - 175 * uSq)));
+        double b = uSq / 1024 * (256 + uSq * (-128 + uSq * (74 - 47 * uSq)));
+        double deltaSigma = b * sinSigma * (cos2SigmaM + b / 4 * (cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)
+                - b / 6 * cos2SigmaM * (-3 + 4 * sinSigma * sinSigma) * (-3 + 4 * cos2SigmaM * cos2SigmaM)));
+        return WGS84_B * a * (sigma - deltaSigma);
+    }
+
+    /**
+     * Haversine distances between consecutive points of a track: out[i] = distance(i, i + 1)
+     *
+     * @param lats  The latitudes
+     * @param lons  The longitudes
+     * @param out   The destination, at least count - 1 long
+     * @param count The number of points to use
+     */
+    public static void haversineSegments(@NonNull double[] lats, @NonNull double[] lons, @NonNull double[] out, int count) {
+        if (count < 2)
+            return;
+        double phiPrev = lats[0] * DEG_TO_RAD;
+        double cosPrev = Math.cos(phiPrev);
+        for (int i = 1; i < count; i++) {
+            double phi = lats[i] * DEG_TO_RAD;
+            double cos = Math.cos(phi);
+            double sinDPhi = Math.sin((phi - phiPrev) * 0.5);
+            double sinDLambda = Math.sin((lons[i] - lons[i - 1]) * DEG_TO_RAD * 0.5);
+            double h = sinDPhi * sinDPhi + cosPrev * cos * sinDLambda * sinDLambda;
+            out[i - 1] = 2 * EARTH_RADIUS * Math.asin(Math.min(1.0, Math.sqrt(h)));
+            phiPrev = phi;
+            cosPrev = cos;
+        }
+    }
+
+    /**
+     * Haversine distances from a fixed point: out[i] = distance(origin, i)
+     *
+     * @param count The number of points to use
+     */
+    public static void haversineFrom(double lat0, double lon0, @NonNull double[] lats, @NonNull double[] lons,
+                                     @NonNull double[] out, int count) {
+        double phi0 = lat0 * DEG_TO_RAD;
+        double cos0 = Math.cos(phi0);
+        for (int i = 0; i < count; i++) {
+            double phi = lats[i] * DEG_TO_RAD;
+            double sinDPhi = Math.sin((phi - phi0) * 0.5);
+            double sinDLambda = Math.sin((lons[i] - lon0) * DEG_TO_RAD * 0.5);
+            double h = sinDPhi * sinDPhi + cos0 * Math.cos(phi) * sinDLambda * sinDLambda;
+            out[i] = 2 * EARTH_RADIUS * Math.asin(Math.min(1.0, Math.sqrt(h)));
+        }
+    }
+
+    /**
+     * Equirectangular distances between consecutive points of a track: out[i] = distance(i, i + 1).
+     * Each segment is bounded by {@link #equirectangularErrorBound(double)}.
+     *
+     * @param count The number of points to use
+     */
+    public static void equirectangularSegments(@NonNull double[] lats, @NonNull double[] lons, @NonNull double[] out, int count) {
+        for (int i = 1; i < count; i++) {
+            double x = wrapLongitude(lons[i] - lons[i - 1]) * DEG_TO_RAD * Math.cos((lats[i] + lats[i - 1]) * 0.5 * DEG_TO_RAD);
+            double y = (lats[i] - lats[i - 1]) * DEG_TO_RAD;
+            out[i - 1] = EARTH_RADIUS * Math.sqrt(x * x + y * y);
+        }
+    }
+
+    /**
+     * Initial bearings between consecutive points of a track: out[i] = bearing(i, i + 1)
+     *
+     * @param count The number of points to use
+     */
+    public static void bearingSegments(@NonNull double[] lats, @NonNull double[] lons, @NonNull double[] out, int count) {
+        if (count < 2)
+            return;
+        double phiPrev = lats[0] * DEG_TO_RAD;
+        double sinPrev = Math.sin(phiPrev), cosPrev = Math.cos(phiPrev);
+        for (int i = 1; i < count; i++) {
+            double phi = lats[i] * DEG_TO_RAD;
+            double sin = Math.sin(phi), cos = Math.cos(phi);
+            double dLambda = (lons[i] - lons[i - 1]) * DEG_TO_RAD;
+            double y = Math.sin(dLambda) * cos;
+            double x = cosPrev * sin - sinPrev * cos * Math.cos(dLambda);
+            out[i - 1] = normalizeBearing(Math.atan2(y, x) * RAD_TO_DEG);
+            sinPrev = sin;
+            cosPrev = cos;
+        }
+    }
+
+    /**
+     * @return The longitude, or longitude difference, wrapped in [-180, 180)
+     */
+    public static double wrapLongitude(double longitude) {
+        return longitude - 360.0 * Math.floor((longitude + 180.0) / 360.0);
+    }
+
+    /**
+     * @return The bearing wrapped in [0, 360)
+     */
+    public static double normalizeBearing(double bearing) {
+        double result = bearing % 360.0;
+        return result < 0 ? result + 360.0 : result;
+    }
+
+    /**
+     * Local East-North-Up tangent plane around an origin.
+     * cos(lat0) is computed once, so projecting and measuring is only multiplications,
+     * which makes the batch methods vectorizable by the JIT.
+     * Good for areas of a few tens of kilometers around the origin.
+     */
+    public static final class LocalProjection {
+
+        private final double lat0, lon0;
+        private final double metersPerDegreeLat, metersPerDegreeLon;
+
+        public LocalProjection(double lat0, double lon0) {
+            this.lat0 = lat0;
+            this.lon0 = lon0;
+            this.metersPerDegreeLat = EARTH_RADIUS * DEG_TO_RAD;
+            this.metersPerDegreeLon = metersPerDegreeLat * Math.cos(lat0 * DEG_TO_RAD);
+        }
+
+        public double getOriginLatitude() {
+            return lat0;
+        }
+
+        public double getOriginLongitude() {
+            return lon0;
+        }
+
+        /**
+         * @return The east offset from the origin in meters
+         */
+        public double east(double lon) {
+            return wrapLongitude(lon - lon0) * metersPerDegreeLon;
+        }
+
+        /**
+         * @return The north offset from the origin in meters
+         */
+        public double north(double lat) {
+            return (lat - lat0) * metersPerDegreeLat;
+        }
+
+        /**
+         * @return The latitude of a north offset in meters
+         */
+        public double latitude(double north) {
+            return lat0 + north / metersPerDegreeLat;
+        }
+
+        /**
+         * @return The longitude of an east offset in meters
+         */
+        public double longitude(double east) {
+            return wrapLongitude(lon0 + east / metersPerDegreeLon);
+        }
+
+        /**
+         * @return The planar distance from the origin in meters
+         */
+        public double distance(double lat, double lon) {
+            double e = wrapLongitude(lon - lon0) * metersPerDegreeLon;
+            double n = (lat - lat0) * metersPerDegreeLat;
+            return Math.sqrt(e * e + n * n);
+        }
+
+        /**
+         * Projects count points into the east and north arrays
+         */
+        public void project(@NonNull double[] lats, @NonNull double[] lons,
+                            @NonNull double[] east, @NonNull double[] north, int count) {
+            for (int i = 0; i < count; i++) {
+                east[i] = wrapLongitude(lons[i] - lon0) * metersPerDegreeLon;
+                north[i] = (lats[i] - lat0) * metersPerDegreeLat;
+            }
+        }
+
+        /**
+         * Planar distances from the origin: out[i] = distance(origin, i)
+         */
+        public void distances(@NonNull double[] lats, @NonNull double[] lons, @NonNull double[] out, int count) {
+            for (int i = 0; i < count; i++) {
+                double e = wrapLongitude(lons[i] - lon0) * metersPerDegreeLon;
+                double n = (lats[i] - lat0) * metersPerDegreeLat;
+                out[i] = Math.sqrt(e * e + n * n);
+            }
+        }
+    }
+}
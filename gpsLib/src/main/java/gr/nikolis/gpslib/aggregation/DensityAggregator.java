@@ -0,0 +1,226 @@
+package gr.nikolis.gpslib.aggregation;
+
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+import gr.nikolis.gpslib.delivery.Subscription;
+
+/**
+ * Streaming fix density per Web Mercator tile, at several zoom levels at once.
+ * Each fix adds one hit to its tiles, and the time until the next fix (the dwell time)
+ * is added to the tiles of the earlier fix, so a parked vehicle weighs more than a passing one.
+ * Only the tiles touched since the last {@link #emitChanged(OnTileChangedListener)} are reported.
+ * Feed it from a {@link Subscription} so the aggregation never runs on the provider thread, like:
+ * aggregator = new DensityAggregator
+ * .Builder(12, 15, 17)
+ * .setMaxDwellMillis(60000)
+ * .build();
+ * new Subscription.Builder(dispatcher, aggregator).build();
+ */
+public final class DensityAggregator implements Subscription.Subscriber {
+
+    public interface OnTileChangedListener {
+        /**
+         * @param quadKey     The tile key, see {@link QuadKey}
+         * @param fixes       The total fixes in the tile
+         * @param dwellMillis The total dwell time in the tile
+         */
+        void onTileChanged(long quadKey, int fixes, long dwellMillis);
+    }
+
+    private static final int NO_CELL = -1;
+
+    //optional parameters
+    private final int[] zoomLevels;
+    private final int maxZoom;
+    private final long maxDwellMillis;
+
+    //cells, indexed through the map
+    private final LongIntHashMap cellIndex;
+    private long[] cellKeys;
+    private int[] cellFixes;
+    private long[] cellDwell;
+    private boolean[] cellDirty;
+    private int cellCount;
+
+    //cells changed since the last emission
+    private int[] dirtyCells;
+    private int dirtyCount;
+
+    //cells of the previous fix, one per zoom level
+    private final int[] previousCells;
+    private long previousTime = Long.MIN_VALUE;
+
+    public static class Builder {
+        //required parameters
+        private final int[] zoomLevels;
+
+        //optional parameters
+        private long maxDwellMillis = 60_000L;
+        private int expectedCells = 1024;
+
+        /**
+         * The Builder constructor
+         *
+         * @param zoomLevels The distinct zoom levels to aggregate, 1 to {@link QuadKey#MAX_ZOOM}
+         */
+        public Builder(@NonNull int... zoomLevels) {
+            this.zoomLevels = zoomLevels.clone();
+        }
+
+        /**
+         * @param maxDwellMillis Longer gaps between fixes count only up to this (signal loss, app paused)
+         */
+        public Builder setMaxDwellMillis(long maxDwellMillis) {
+            this.maxDwellMillis = maxDwellMillis;
+            return this;
+        }
+
+        /**
+         * @param expectedCells The number of tiles to hold without resizing
+         */
+        public Builder setExpectedCells(int expectedCells) {
+            this.expectedCells = expectedCells;
+            return this;
+        }
+
+        public DensityAggregator build() {
+            if (zoomLevels.length == 0)
+                throw new IllegalArgumentException("At least one zoom level is required");
+            long seen = 0;
+            for (int zoom : zoomLevels) {
+                if (zoom < 1 || zoom > QuadKey.MAX_ZOOM)
+                    throw new IllegalArgumentException("Zoom must be between 1 and " + QuadKey.MAX_ZOOM + ": " + zoom);
+                if ((seen & (1L << zoom)) != 0)
+                    throw new IllegalArgumentException("Duplicate zoom level: " + zoom);
+                seen |= 1L << zoom;
+            }
+            return new DensityAggregator(this);
+        }
+    }
+
+    private DensityAggregator(@NonNull Builder builder) {
+        this.zoomLevels = builder.zoomLevels;
+        int max = 1;
+        for (int zoom : zoomLevels)
+            max = Math.max(max, zoom);
+        this.maxZoom = max;
+        this.maxDwellMillis = builder.maxDwellMillis;
+        int capacity = Math.max(16, builder.expectedCells);
+        this.cellIndex = new LongIntHashMap(capacity, NO_CELL);
+        this.cellKeys = new long[capacity];
+        this.cellFixes = new int[capacity];
+        this.cellDwell = new long[capacity];
+        this.cellDirty = new boolean[capacity];
+        this.dirtyCells = new int[capacity];
+        this.previousCells = new int[zoomLevels.length];
+        Arrays.fill(previousCells, NO_CELL);
+    }
+
+    @Override
+    public void onLocation(@NonNull Location location) {
+        add(location.getLatitude(), location.getLongitude(), location.getTime());
+    }
+
+    /**
+     * Adds a fix. Fixes are expected in time order, as the engines and recorded tracks deliver them.
+     *
+     * @param lat        The latitude
+     * @param lon        The longitude
+     * @param timeMillis The fix time
+     */
+    public synchronized void add(double lat, double lon, long timeMillis) {
+        if (previousTime != Long.MIN_VALUE && timeMillis > previousTime) {
+            long dwell = Math.min(timeMillis - previousTime, maxDwellMillis);
+            for (int cell : previousCells) {
+                cellDwell[cell] += dwell;
+                markDirty(cell);
+            }
+        }
+        // project once, the coarser tiles are prefixes of the finest one
+        long finest = QuadKey.encode(lat, lon, maxZoom);
+        for (int i = 0; i < zoomLevels.length; i++) {
+            int cell = cellOf(QuadKey.ancestor(finest, zoomLevels[i]));
+            cellFixes[cell]++;
+            markDirty(cell);
+            previousCells[i] = cell;
+        }
+        previousTime = timeMillis;
+    }
+
+    /**
+     * Reports every tile changed since the previous call
+     *
+     * @param listener The tile consumer, called on the calling thread
+     * @return The number of reported tiles
+     */
+    public synchronized int emitChanged(@NonNull OnTileChangedListener listener) {
+        int emitted = dirtyCount;
+        for (int i = 0; i < dirtyCount; i++) {
+            int cell = dirtyCells[i];
+            cellDirty[cell] = false;
+            listener.onTileChanged(cellKeys[cell], cellFixes[cell], cellDwell[cell]);
+        }
+        dirtyCount = 0;
+        return emitted;
+    }
+
+    /**
+     * Reports every tile, changed or not, without touching the changed set
+     *
+     * @param listener The tile consumer, called on the calling thread
+     */
+    public synchronized void emitAll(@NonNull OnTileChangedListener listener) {
+        for (int cell = 0; cell < cellCount; cell++)
+            listener.onTileChanged(cellKeys[cell], cellFixes[cell], cellDwell[cell]);
+    }
+
+    /**
+     * Forgets all the tiles, e.g. after an upload
+     */
+    public synchronized void reset() {
+        cellIndex.clear();
+        Arrays.fill(cellDirty, 0, cellCount, false);
+        cellCount = 0;
+        dirtyCount = 0;
+        Arrays.fill(previousCells, NO_CELL);
+        previousTime = Long.MIN_VALUE;
+    }
+
+    public synchronized int getCellCount() {
+        return cellCount;
+    }
+
+    private int cellOf(long key) {
+        int cell = cellIndex.get(key);
+        if (cell != NO_CELL)
+            return cell;
+        if (cellCount == cellKeys.length)
+            grow();
+        cell = cellCount++;
+        cellKeys[cell] = key;
+        cellFixes[cell] = 0;
+        cellDwell[cell] = 0;
+        cellIndex.put(key, cell);
+        return cell;
+    }
+
+    private void markDirty(int cell) {
+        if (!cellDirty[cell]) {
+            cellDirty[cell] = true;
+            dirtyCells[dirtyCount++] = cell;
+        }
+    }
+
+    private void grow() {
+        int capacity = cellKeys.length << 1;
+        cellKeys = Arrays.copyOf(cellKeys, capacity);
+        cellFixes = Arrays.copyOf(cellFixes, capacity);
+        cellDwell = Arrays.copyOf(cellDwell, capacity);
+        cellDirty = Arrays.copyOf(cellDirty, capacity);
+        dirtyCells = Arrays.copyOf(dirtyCells, capacity);
+    }
+}
@@ -0,0 +1,183 @@
+package gr.nikolis.gpslib.aggregation;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from long to int, with linear probing and no boxing.
+ * Not thread safe.
+ */
+public final class LongIntHashMap {
+
+    /**
+     * Callback of {@link #forEach(Procedure)}
+     */
+    public interface Procedure {
+        void apply(long key, int value);
+    }
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final int missingValue;
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    // the 0 key marks free slots, so it is stored aside
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    /**
+     * @param expectedSize The number of keys to hold without resizing
+     * @param missingValue The value returned for absent keys
+     */
+    public LongIntHashMap(int expectedSize, int missingValue) {
+        this.missingValue = missingValue;
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    public LongIntHashMap() {
+        this(16, 0);
+    }
+
+    public int size() {
+        return size + (hasZeroKey ? 1 : 0);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0)
+            return hasZeroKey;
+        int index = mix(key) & mask;
+        long k;
+        while ((k = keys[index]) != 0) {
+            if (k == key)
+                return true;
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @return The value of the key or the missing value
+     */
+    public int get(long key) {
+        if (key == 0)
+            return hasZeroKey ? zeroValue : missingValue;
+        int index = mix(key) & mask;
+        long k;
+        while ((k = keys[index]) != 0) {
+            if (k == key)
+                return values[index];
+            index = (index + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    /**
+     * @return The previous value of the key or the missing value
+     */
+    public int put(long key, int value) {
+        if (key == 0) {
+            int previous = hasZeroKey ? zeroValue : missingValue;
+            hasZeroKey = true;
+            zeroValue = value;
+            return previous;
+        }
+        int index = mix(key) & mask;
+        long k;
+        while ((k = keys[index]) != 0) {
+            if (k == key) {
+                int previous = values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size >= resizeAt)
+            allocate(keys.length << 1);
+        return missingValue;
+    }
+
+    /**
+     * Adds to the value of the key, starting from the missing value if the key is absent
+     *
+     * @return The new value
+     */
+    public int addTo(long key, int delta) {
+        if (key == 0) {
+            zeroValue = (hasZeroKey ? zeroValue : missingValue) + delta;
+            hasZeroKey = true;
+            return zeroValue;
+        }
+        int index = mix(key) & mask;
+        long k;
+        while ((k = keys[index]) != 0) {
+            if (k == key)
+                return values[index] += delta;
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        int value = values[index] = missingValue + delta;
+        if (++size >= resizeAt)
+            allocate(keys.length << 1);
+        return value;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        size = 0;
+        hasZeroKey = false;
+    }
+
+    public void forEach(@NonNull Procedure procedure) {
+        if (hasZeroKey)
+            procedure.apply(0, zeroValue);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0)
+                procedure.apply(keys[i], values[i]);
+        }
+    }
+
+    private void allocate(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+        if (oldKeys == null)
+            return;
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int index = mix(key) & mask;
+                while (keys[index] != 0)
+                    index = (index + 1) & mask;
+                keys[index] = key;
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Murmur3 finalizer, spreads neighbouring cell keys over the table
+     */
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
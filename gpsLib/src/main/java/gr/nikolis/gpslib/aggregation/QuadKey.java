@@ -0,0 +1,111 @@
+package gr.nikolis.gpslib.aggregation;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Web Mercator tile keys packed in a long: the zoom in the top 6 bits
+ * and the Morton interleaved tile x, y in the rest.
+ * Keys of different zoom levels never collide, and the key of a tile at zoom z
+ * shifted right by 2 (with z - 1) gives its parent.
+ */
+public final class QuadKey {
+
+    public static final int MAX_ZOOM = 29;
+    public static final double MAX_LATITUDE = 85.05112878;
+
+    private static final int ZOOM_SHIFT = 58;
+    private static final long MORTON_MASK = (1L << ZOOM_SHIFT) - 1;
+
+    private QuadKey() {
+    }
+
+    /**
+     * @param lat  The latitude, clamped to the Web Mercator limits
+     * @param lon  The longitude
+     * @param zoom The zoom level, 1 to {@link #MAX_ZOOM}
+     * @return The key of the tile that contains the point
+     */
+    public static long encode(double lat, double lon, int zoom) {
+        if (lat > MAX_LATITUDE) lat = MAX_LATITUDE;
+        else if (lat < -MAX_LATITUDE) lat = -MAX_LATITUDE;
+        double tiles = 1L << zoom;
+        double x = (lon + 180.0) / 360.0;
+        double sinLat = Math.sin(Math.toRadians(lat));
+        double y = 0.5 - Math.log((1 + sinLat) / (1 - sinLat)) / (4 * Math.PI);
+        long max = (1L << zoom) - 1;
+        long tileX = Math.min(max, Math.max(0, (long) (x * tiles)));
+        long tileY = Math.min(max, Math.max(0, (long) (y * tiles)));
+        return fromTile(tileX, tileY, zoom);
+    }
+
+    public static long fromTile(long tileX, long tileY, int zoom) {
+        if (zoom < 1 || zoom > MAX_ZOOM)
+            throw new IllegalArgumentException("Zoom must be between 1 and " + MAX_ZOOM + ": " + zoom);
+        return ((long) zoom << ZOOM_SHIFT) | (spread(tileY) << 1) | spread(tileX);
+    }
+
+    public static int zoom(long key) {
+        return (int) (key >>> ZOOM_SHIFT);
+    }
+
+    public static long tileX(long key) {
+        return compact(key & MORTON_MASK);
+    }
+
+    public static long tileY(long key) {
+        return compact((key & MORTON_MASK) >>> 1);
+    }
+
+    /**
+     * @return The key of the enclosing tile one zoom level up
+     */
+    public static long parent(long key) {
+        return ancestor(key, zoom(key) - 1);
+    }
+
+    /**
+     * @param zoom The ancestor zoom level, up to the zoom of the key
+     * @return The key of the enclosing tile at that zoom level
+     */
+    public static long ancestor(long key, int zoom) {
+        int levels = zoom(key) - zoom;
+        if (zoom < 1 || levels < 0)
+            throw new IllegalArgumentException("Zoom must be between 1 and " + zoom(key) + ": " + zoom);
+        return ((long) zoom << ZOOM_SHIFT) | ((key & MORTON_MASK) >>> (2 * levels));
+    }
+
+    /**
+     * @return The Bing style quadkey string, one digit per zoom level
+     */
+    @NonNull
+    public static String toString(long key) {
+        int zoom = zoom(key);
+        char[] digits = new char[zoom];
+        for (int i = 0; i < zoom; i++)
+            digits[zoom - 1 - i] = (char) ('0' + ((key >>> (2 * i)) & 3));
+        return new String(digits);
+    }
+
+    /**
+     * Spreads the low 29 bits so there is a zero between them
+     */
+    private static long spread(long v) {
+        v &= 0x1FFFFFFFL;
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+
+    private static long compact(long v) {
+        v &= 0x5555555555555555L;
+        v = (v | (v >>> 1)) & 0x3333333333333333L;
+        v = (v | (v >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v >>> 4)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v >>> 8)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v >>> 16)) & 0x00000000FFFFFFFFL;
+        return v;
+    }
+}
@@ -0,0 +1,95 @@
+package gr.nikolis.gpslib.batch;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a {@link TrackBatchProcessor} run
+ */
+public final class BatchReport {
+
+    private final int files, parallelism;
+    private final List<File> failedFiles;
+    private final long fixesRead, fixesWritten, linesSkipped, elapsedNanos;
+
+    BatchReport(int files, @NonNull List<File> failedFiles, long fixesRead, long fixesWritten,
+                long linesSkipped, long elapsedNanos, int parallelism) {
+        this.files = files;
+        this.failedFiles = Collections.unmodifiableList(failedFiles);
+        this.fixesRead = fixesRead;
+        this.fixesWritten = fixesWritten;
+        this.linesSkipped = linesSkipped;
+        this.elapsedNanos = elapsedNanos;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return The number of track files found
+     */
+    public int getFiles() {
+        return files;
+    }
+
+    /**
+     * @return The files that could not be read or written
+     */
+    public List<File> getFailedFiles() {
+        return failedFiles;
+    }
+
+    public long getFixesRead() {
+        return fixesRead;
+    }
+
+    /**
+     * @return The fixes that passed every stage
+     */
+    public long getFixesWritten() {
+        return fixesWritten;
+    }
+
+    /**
+     * @return The malformed lines or points
+     */
+    public long getLinesSkipped() {
+        return linesSkipped;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public double getFixesPerSecond() {
+        return elapsedNanos == 0 ? 0 : fixesRead * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return The throughput divided by the busy workers, stays flat while scaling is linear.
+     * A file is never split, so a run with fewer files than workers uses only one per file.
+     */
+    public double getFixesPerSecondPerCore() {
+        return getFixesPerSecond() / Math.max(1, Math.min(parallelism, files));
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "BatchReport{" +
+                "files=" + files +
+                ", failed=" + failedFiles.size() +
+                ", fixesRead=" + fixesRead +
+                ", fixesWritten=" + fixesWritten +
+                ", linesSkipped=" + linesSkipped +
+                ", elapsedMillis=" + elapsedNanos / 1_000_000 +
+                ", parallelism=" + parallelism +
+                ", fixesPerSecondPerCore=" + Math.round(getFixesPerSecondPerCore()) +
+                '}';
+    }
+}
@@ -0,0 +1,26 @@
+package gr.nikolis.gpslib.batch;
+
+import androidx.annotation.NonNull;
+
+/**
+ * One step of the per-fix processing chain (cleaning, statistics, compression).
+ * A new stage is created for every track, so stages can keep per-track state without locking.
+ */
+public interface FixStage {
+
+    interface Factory {
+        @NonNull
+        FixStage create();
+    }
+
+    /**
+     * @param fix The fix, may be modified in place
+     * @return False to drop the fix from the output and from the following stages
+     */
+    boolean process(@NonNull TrackFix fix);
+
+    /**
+     * Called once after the last fix of the track
+     */
+    void finish();
+}
@@ -0,0 +1,69 @@
+package gr.nikolis.gpslib.batch;
+
+import androidx.annotation.NonNull;
+
+import gr.nikolis.gpslib.Geodesy;
+
+/**
+ * Common stages of the batch chain
+ */
+public final class FixStages {
+
+    private FixStages() {
+    }
+
+    /**
+     * Cleaning: drops fixes with an accuracy worse than the limit. Fixes without accuracy pass.
+     *
+     * @param maxAccuracy The limit in meters
+     */
+    public static FixStage.Factory maxAccuracy(final float maxAccuracy) {
+        return new FixStage.Factory() {
+            @NonNull
+            @Override
+            public FixStage create() {
+                return new FixStage() {
+                    @Override
+                    public boolean process(@NonNull TrackFix fix) {
+                        return !(fix.accuracy > maxAccuracy);
+                    }
+
+                    @Override
+                    public void finish() {
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Compression: drops fixes closer than the displacement to the last kept fix
+     *
+     * @param displacement The distance in meters
+     */
+    public static FixStage.Factory minDistance(final double displacement) {
+        return new FixStage.Factory() {
+            @NonNull
+            @Override
+            public FixStage create() {
+                return new FixStage() {
+                    private double lastLat = Double.NaN, lastLon = Double.NaN;
+
+                    @Override
+                    public boolean process(@NonNull TrackFix fix) {
+                        if (!Double.isNaN(lastLat)
+                                && Geodesy.equirectangular(lastLat, lastLon, fix.latitude, fix.longitude) < displacement)
+                            return false;
+                        lastLat = fix.latitude;
+                        lastLon = fix.longitude;
+                        return true;
+                    }
+
+                    @Override
+                    public void finish() {
+                    }
+                };
+            }
+        };
+    }
+}
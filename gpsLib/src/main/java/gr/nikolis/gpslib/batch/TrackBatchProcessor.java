@@ -0,0 +1,278 @@
+package gr.nikolis.gpslib.batch;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Re-runs a chain of per-fix stages over a directory of recorded tracks, on all cores.
+ * Every track is memory mapped, parsed in place, passed through a fresh stage chain
+ * and written to the output directory as CSV named after the track, e.g. a.gpx to a.gpx.csv.
+ * The output is written to a temporary file first and renamed when complete.
+ * Call like:
+ * BatchReport report = new TrackBatchProcessor
+ * .Builder(inputDirectory, outputDirectory)
+ * .addStage(FixStages.maxAccuracy(20))
+ * .addStage(FixStages.minDistance(5))
+ * .build()
+ * .run();
+ */
+public final class TrackBatchProcessor {
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+    private static final String CSV_HEADER = "time,latitude,longitude,altitude,speed,bearing,accuracy\n";
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final String OUTPUT_SUFFIX = ".csv";
+    private static final String TEMP_SUFFIX = ".part";
+
+    //required parameters
+    private final File inputDirectory, outputDirectory;
+
+    //optional parameters
+    private final List<FixStage.Factory> stages;
+    private final int parallelism;
+
+    //counters of the running batch
+    private final AtomicLong fixesRead = new AtomicLong();
+    private final AtomicLong fixesWritten = new AtomicLong();
+    private final AtomicLong linesSkipped = new AtomicLong();
+    private final ConcurrentLinkedQueue<File> failedFiles = new ConcurrentLinkedQueue<>();
+
+    public static class Builder {
+        //required parameters
+        private final File inputDirectory, outputDirectory;
+
+        //optional parameters
+        private final List<FixStage.Factory> stages = new ArrayList<>();
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * The Builder constructor
+         *
+         * @param inputDirectory  The directory with the .csv, .gpx and .nmea tracks
+         * @param outputDirectory The directory of the processed tracks, created if missing,
+         *                        it must not be the input directory
+         */
+        public Builder(@NonNull File inputDirectory, @NonNull File outputDirectory) {
+            this.inputDirectory = inputDirectory;
+            this.outputDirectory = outputDirectory;
+        }
+
+        /**
+         * Appends a stage to the chain, stages run in the order they are added
+         */
+        public Builder addStage(@NonNull FixStage.Factory stage) {
+            this.stages.add(stage);
+            return this;
+        }
+
+        /**
+         * @param parallelism The number of worker threads, defaults to the number of cores
+         */
+        public Builder setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public TrackBatchProcessor build() {
+            if (parallelism < 1)
+                throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+            return new TrackBatchProcessor(this);
+        }
+    }
+
+    private TrackBatchProcessor(@NonNull Builder builder) {
+        this.inputDirectory = builder.inputDirectory;
+        this.outputDirectory = builder.outputDirectory;
+        this.stages = new ArrayList<>(builder.stages);
+        this.parallelism = builder.parallelism;
+    }
+
+    /**
+     * Processes every track file of the input directory and blocks until all are done.
+     * A file that fails is reported and does not stop the others.
+     *
+     * @return The report of the run
+     * @throws IOException If a directory is not usable or both are the same
+     */
+    public synchronized BatchReport run() throws IOException {
+        File[] files = inputDirectory.listFiles();
+        if (files == null)
+            throw new IOException("Can not list " + inputDirectory);
+        if (inputDirectory.getCanonicalFile().equals(outputDirectory.getCanonicalFile()))
+            throw new IOException("The output directory is the input directory: " + outputDirectory);
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs())
+            throw new IOException("Can not create " + outputDirectory);
+
+        List<File> tracks = new ArrayList<>();
+        for (File file : files) {
+            if (file.isFile() && TrackFormat.of(file) != null)
+                tracks.add(file);
+        }
+        // the largest first, so the last tasks to finish are the short ones
+        File[] sorted = tracks.toArray(new File[0]);
+        Arrays.sort(sorted, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(b.length(), a.length());
+            }
+        });
+
+        fixesRead.set(0);
+        fixesWritten.set(0);
+        linesSkipped.set(0);
+        failedFiles.clear();
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new TrackTask(sorted, 0, sorted.length));
+        } finally {
+            pool.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        return new BatchReport(sorted.length, new ArrayList<>(failedFiles), fixesRead.get(),
+                fixesWritten.get(), linesSkipped.get(), elapsed, parallelism);
+    }
+
+    /**
+     * Splits the file range in halves until a single file remains,
+     * idle workers steal the pending halves
+     */
+    private final class TrackTask extends RecursiveAction {
+
+        private final File[] files;
+        private final int from, to;
+
+        TrackTask(File[] files, int from, int to) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (to > from)
+                    processFile(files[from]);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new TrackTask(files, from, middle), new TrackTask(files, middle, to));
+        }
+    }
+
+    private void processFile(@NonNull File file) {
+        TrackFormat format = TrackFormat.of(file);
+        File output = new File(outputDirectory, file.getName() + OUTPUT_SUFFIX);
+        File temp = new File(outputDirectory, output.getName() + TEMP_SUFFIX);
+
+        final FixStage[] chain = new FixStage[stages.size()];
+        for (int i = 0; i < chain.length; i++)
+            chain[i] = stages.get(i).create();
+
+        final long[] counters = new long[2]; // read, written
+        final StringBuilder line = new StringBuilder(96);
+        final char[][] chars = {new char[96]};
+        long skipped;
+        try (RandomAccessFile input = new RandomAccessFile(file, "r");
+             FileChannel channel = input.getChannel();
+             final Writer writer = new BufferedWriter(
+                     new OutputStreamWriter(new FileOutputStream(temp), US_ASCII), WRITE_BUFFER_SIZE)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Track larger than 2GB: " + file);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            writer.write(CSV_HEADER);
+            TrackParser parser = new TrackParser(buffer);
+            final IOException[] writeError = new IOException[1];
+            parser.parse(format, new TrackParser.Sink() {
+                @Override
+                public void accept(@NonNull TrackFix fix) {
+                    counters[0]++;
+                    for (FixStage stage : chain) {
+                        if (!stage.process(fix))
+                            return;
+                    }
+                    if (writeError[0] != null)
+                        return;
+                    try {
+                        writeCsv(writer, line, chars, fix);
+                        counters[1]++;
+                    } catch (IOException e) {
+                        writeError[0] = e;
+                    }
+                }
+            });
+            for (FixStage stage : chain)
+                stage.finish();
+            if (writeError[0] != null)
+                throw writeError[0];
+            skipped = parser.getSkipped();
+        } catch (IOException | RuntimeException e) {
+            temp.delete();
+            failedFiles.add(file);
+            return;
+        }
+        if (!rename(temp, output)) {
+            temp.delete();
+            failedFiles.add(file);
+            return;
+        }
+        fixesRead.addAndGet(counters[0]);
+        fixesWritten.addAndGet(counters[1]);
+        linesSkipped.addAndGet(skipped);
+    }
+
+    /**
+     * Moves the complete output in place, replacing the output of an earlier run
+     */
+    private static boolean rename(@NonNull File from, @NonNull File to) {
+        if (from.renameTo(to))
+            return true;
+        return to.delete() && from.renameTo(to);
+    }
+
+    /**
+     * Formats the fix in the reused builder and writes it through the reused char array,
+     * so no String is created per line
+     */
+    private static void writeCsv(@NonNull Writer writer, @NonNull StringBuilder line, @NonNull char[][] chars,
+                                 @NonNull TrackFix fix) throws IOException {
+        line.setLength(0);
+        line.append(fix.time).append(',')
+                .append(fix.latitude).append(',')
+                .append(fix.longitude).append(',');
+        if (!Double.isNaN(fix.altitude)) line.append(fix.altitude);
+        line.append(',');
+        if (!Float.isNaN(fix.speed)) line.append(fix.speed);
+        line.append(',');
+        if (!Float.isNaN(fix.bearing)) line.append(fix.bearing);
+        line.append(',');
+        if (!Float.isNaN(fix.accuracy)) line.append(fix.accuracy);
+        line.append('\n');
+        int length = line.length();
+        if (chars[0].length < length)
+            chars[0] = new char[length];
+        line.getChars(0, length, chars[0], 0);
+        writer.write(chars[0], 0, length);
+    }
+}
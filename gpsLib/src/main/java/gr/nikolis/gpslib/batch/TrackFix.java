@@ -0,0 +1,18 @@
+package gr.nikolis.gpslib.batch;
+
+/**
+ * One fix of a recorded track. A single instance is reused for every fix of a track,
+ * so stages must copy the values they want to keep. Missing values are NaN.
+ */
+public final class TrackFix {
+
+    public long time;
+    public double latitude, longitude, altitude;
+    public float speed, bearing, accuracy;
+
+    void reset() {
+        time = 0;
+        latitude = longitude = altitude = Double.NaN;
+        speed = bearing = accuracy = Float.NaN;
+    }
+}
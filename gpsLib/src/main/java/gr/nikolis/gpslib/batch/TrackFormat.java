@@ -0,0 +1,44 @@
+package gr.nikolis.gpslib.batch;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * The supported track file formats, by file extension
+ */
+public enum TrackFormat {
+    /**
+     * time (epoch millis), latitude, longitude[, altitude, speed, bearing, accuracy]
+     */
+    CSV(".csv"),
+    /**
+     * GPX 1.1 track points with optional ele and time
+     */
+    GPX(".gpx"),
+    /**
+     * RMC sentences of any talker
+     */
+    NMEA(".nmea");
+
+    private final String extension;
+
+    TrackFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return The format of the file, or null if it is not a track file
+     */
+    @Nullable
+    public static TrackFormat of(@NonNull File file) {
+        String name = file.getName().toLowerCase(Locale.US);
+        for (TrackFormat format : values()) {
+            if (name.endsWith(format.extension))
+                return format;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,412 @@
+package gr.nikolis.gpslib.batch;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Parses track files straight from a (memory mapped) byte buffer.
+ * Numbers are parsed from the bytes, so no String is created per line or per field.
+ * Malformed lines are skipped and counted.
+ */
+final class TrackParser {
+
+    interface Sink {
+        void accept(@NonNull TrackFix fix);
+    }
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+    private static final int MAX_FIELDS = 32;
+    private static final double KNOTS_TO_MPS = 1852.0 / 3600.0;
+    private static final int MAX_FAST_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15};
+
+    private static final byte[] TRKPT_OPEN = ascii("<trkpt");
+    private static final byte[] TRKPT_CLOSE = ascii("</trkpt>");
+    private static final byte[] LAT = ascii("lat=");
+    private static final byte[] LON = ascii("lon=");
+    private static final byte[] ELE_OPEN = ascii("<ele>");
+    private static final byte[] ELE_CLOSE = ascii("</ele>");
+    private static final byte[] TIME_OPEN = ascii("<time>");
+    private static final byte[] TIME_CLOSE = ascii("</time>");
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private final TrackFix fix = new TrackFix();
+    private final int[] fieldStart = new int[MAX_FIELDS];
+    private final int[] fieldEnd = new int[MAX_FIELDS];
+    private long skipped;
+
+    TrackParser(@NonNull ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.limit = buffer.limit();
+    }
+
+    /**
+     * @return The number of malformed lines or points
+     */
+    long getSkipped() {
+        return skipped;
+    }
+
+    void parse(@NonNull TrackFormat format, @NonNull Sink sink) {
+        switch (format) {
+            case CSV:
+                parseCsv(sink);
+                break;
+            case GPX:
+                parseGpx(sink);
+                break;
+            case NMEA:
+                parseNmea(sink);
+                break;
+        }
+    }
+
+    private void parseCsv(@NonNull Sink sink) {
+        int position = 0;
+        boolean firstLine = true;
+        while (position < limit) {
+            int end = lineEnd(position);
+            // empty lines are ignored
+            if (end > position) {
+                byte first = buffer.get(position);
+                // only the first line may be a header, it does not start with a number
+                if (!firstLine || first == '-' || (first >= '0' && first <= '9'))
+                    parseCsvLine(position, end, sink);
+                firstLine = false;
+            }
+            position = nextLine(end);
+        }
+    }
+
+    private void parseCsvLine(int from, int to, @NonNull Sink sink) {
+        int fields = split(from, to, (byte) ',');
+        if (fields < 3) {
+            skipped++;
+            return;
+        }
+        try {
+            fix.reset();
+            fix.time = parseLong(fieldStart[0], fieldEnd[0]);
+            fix.latitude = parseDouble(fieldStart[1], fieldEnd[1]);
+            fix.longitude = parseDouble(fieldStart[2], fieldEnd[2]);
+            if (fields > 3) fix.altitude = parseOptional(3);
+            if (fields > 4) fix.speed = (float) parseOptional(4);
+            if (fields > 5) fix.bearing = (float) parseOptional(5);
+            if (fields > 6) fix.accuracy = (float) parseOptional(6);
+            sink.accept(fix);
+        } catch (NumberFormatException e) {
+            skipped++;
+        }
+    }
+
+    private void parseNmea(@NonNull Sink sink) {
+        int position = 0;
+        while (position < limit) {
+            int end = lineEnd(position);
+            int checksum = indexOf((byte) '*', position, end);
+            int sentenceEnd = checksum >= 0 ? checksum : end;
+            if (sentenceEnd - position > 6 && buffer.get(position) == '$'
+                    && buffer.get(position + 3) == 'R' && buffer.get(position + 4) == 'M' && buffer.get(position + 5) == 'C') {
+                int fields = split(position, sentenceEnd, (byte) ',');
+                // the checksum is optional, but a corrupted sentence must not become a fix
+                if (checksum >= 0 && !checksumMatches(position + 1, checksum, end)) {
+                    skipped++;
+                } else if (fields >= 10 && fieldEnd[2] > fieldStart[2] && buffer.get(fieldStart[2]) == 'A') {
+                    // status A is a valid fix, V a warning
+                    try {
+                        fix.reset();
+                        fix.latitude = nmeaDegrees(parseDouble(fieldStart[3], fieldEnd[3]));
+                        if (buffer.get(fieldStart[4]) == 'S') fix.latitude = -fix.latitude;
+                        fix.longitude = nmeaDegrees(parseDouble(fieldStart[5], fieldEnd[5]));
+                        if (buffer.get(fieldStart[6]) == 'W') fix.longitude = -fix.longitude;
+                        fix.speed = (float) (parseOptional(7) * KNOTS_TO_MPS);
+                        fix.bearing = (float) parseOptional(8);
+                        fix.time = nmeaTime(fieldStart[9], fieldStart[1], fieldEnd[1]);
+                        sink.accept(fix);
+                    } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                        skipped++;
+                    }
+                }
+            }
+            position = nextLine(end);
+        }
+    }
+
+    /**
+     * @param from     The first byte after the $
+     * @param asterisk The position of the *
+     * @param lineEnd  The end of the line
+     * @return True if the two hex digits after the * are the XOR of the bytes in between
+     */
+    private boolean checksumMatches(int from, int asterisk, int lineEnd) {
+        if (lineEnd - asterisk < 3)
+            return false;
+        int checksum = 0;
+        for (int i = from; i < asterisk; i++)
+            checksum ^= buffer.get(i);
+        int high = hexDigit(buffer.get(asterisk + 1));
+        int low = hexDigit(buffer.get(asterisk + 2));
+        return high >= 0 && low >= 0 && (high << 4 | low) == checksum;
+    }
+
+    private static int hexDigit(byte b) {
+        if (b >= '0' && b <= '9')
+            return b - '0';
+        if (b >= 'A' && b <= 'F')
+            return b - 'A' + 10;
+        if (b >= 'a' && b <= 'f')
+            return b - 'a' + 10;
+        return -1;
+    }
+
+    private void parseGpx(@NonNull Sink sink) {
+        int position = 0;
+        while ((position = indexOf(TRKPT_OPEN, position, limit)) >= 0) {
+            int tagEnd = indexOf((byte) '>', position, limit);
+            if (tagEnd < 0)
+                return;
+            boolean selfClosing = buffer.get(tagEnd - 1) == '/';
+            int pointEnd = selfClosing ? tagEnd : indexOf(TRKPT_CLOSE, tagEnd, limit);
+            if (pointEnd < 0)
+                return;
+            try {
+                fix.reset();
+                fix.latitude = parseAttribute(LAT, position, tagEnd);
+                fix.longitude = parseAttribute(LON, position, tagEnd);
+                int ele = indexOf(ELE_OPEN, tagEnd, pointEnd);
+                if (ele >= 0) {
+                    int from = ele + ELE_OPEN.length;
+                    fix.altitude = parseDouble(from, indexOf(ELE_CLOSE, from, pointEnd));
+                }
+                int time = indexOf(TIME_OPEN, tagEnd, pointEnd);
+                if (time >= 0) {
+                    int from = time + TIME_OPEN.length;
+                    fix.time = parseIsoTime(from, indexOf(TIME_CLOSE, from, pointEnd));
+                }
+                sink.accept(fix);
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                skipped++;
+            }
+            position = pointEnd + 1;
+        }
+    }
+
+    private double parseAttribute(@NonNull byte[] name, int from, int to) {
+        int attribute = indexOf(name, from, to);
+        if (attribute < 0)
+            throw new NumberFormatException("Missing attribute");
+        int open = attribute + name.length;
+        byte quote = buffer.get(open);
+        int close = indexOf(quote, open + 1, to);
+        return parseDouble(open + 1, close);
+    }
+
+    private double parseOptional(int field) {
+        return fieldEnd[field] > fieldStart[field] ? parseDouble(fieldStart[field], fieldEnd[field]) : Double.NaN;
+    }
+
+    /**
+     * @return The end of the line, without the line terminators
+     */
+    private int lineEnd(int from) {
+        int end = indexOf((byte) '\n', from, limit);
+        if (end < 0)
+            end = limit;
+        if (end > from && buffer.get(end - 1) == '\r')
+            end--;
+        return end;
+    }
+
+    private int nextLine(int lineEnd) {
+        int next = indexOf((byte) '\n', lineEnd, limit);
+        return next < 0 ? limit : next + 1;
+    }
+
+    /**
+     * Splits [from, to) into the field arrays
+     *
+     * @return The number of fields
+     */
+    private int split(int from, int to, byte separator) {
+        int fields = 0;
+        int start = from;
+        for (int i = from; i < to && fields < MAX_FIELDS - 1; i++) {
+            if (buffer.get(i) == separator) {
+                fieldStart[fields] = start;
+                fieldEnd[fields++] = i;
+                start = i + 1;
+            }
+        }
+        fieldStart[fields] = start;
+        fieldEnd[fields++] = to;
+        return fields;
+    }
+
+    private int indexOf(byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value)
+                return i;
+        }
+        return -1;
+    }
+
+    private int indexOf(@NonNull byte[] pattern, int from, int to) {
+        outer:
+        for (int i = from, last = to - pattern.length; i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (buffer.get(i + j) != pattern[j])
+                    continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private long parseLong(int from, int to) {
+        from = skipSpaces(from, to);
+        to = trimSpaces(from, to);
+        boolean negative = from < to && buffer.get(from) == '-';
+        int i = negative ? from + 1 : from;
+        if (i == to)
+            throw new NumberFormatException("Empty number");
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9)
+                throw new NumberFormatException("Not a number");
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Plain decimals with up to 15 digits are parsed from the bytes. Their mantissa and power of ten
+     * are exact doubles, so the single division rounds like {@link Double#parseDouble(String)}.
+     * Anything else (exponents, longer mantissas) goes through {@link Double#parseDouble(String)}.
+     */
+    private double parseDouble(int from, int to) {
+        from = skipSpaces(from, to);
+        to = trimSpaces(from, to);
+        boolean negative = from < to && buffer.get(from) == '-';
+        int i = negative || (from < to && buffer.get(from) == '+') ? from + 1 : from;
+        long mantissa = 0;
+        int digits = 0, decimals = -1;
+        for (; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (decimals >= 0)
+                    decimals++;
+            } else if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                break;
+            }
+        }
+        if (i < to || digits > MAX_FAST_DIGITS)
+            return Double.parseDouble(ascii(from, to));
+        if (digits == 0)
+            throw new NumberFormatException("Empty number");
+        double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private int skipSpaces(int from, int to) {
+        while (from < to && buffer.get(from) == ' ')
+            from++;
+        return from;
+    }
+
+    private int trimSpaces(int from, int to) {
+        while (to > from && buffer.get(to - 1) == ' ')
+            to--;
+        return to;
+    }
+
+    @NonNull
+    private String ascii(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = buffer.get(from + i);
+        return new String(bytes, US_ASCII);
+    }
+
+    /**
+     * @return The ddmm.mmmm value in degrees
+     */
+    private static double nmeaDegrees(double value) {
+        double degrees = Math.floor(value / 100);
+        return degrees + (value - degrees * 100) / 60.0;
+    }
+
+    /**
+     * @param date    The start of the ddmmyy date field
+     * @param time    The start of the hhmmss.sss time field
+     * @param timeEnd The end of the time field
+     * @return The epoch millis
+     */
+    private long nmeaTime(int date, int time, int timeEnd) {
+        int day = digits(date, 2), month = digits(date + 2, 2), year = digits(date + 4, 2);
+        year += year < 80 ? 2000 : 1900; // two digit years, the same pivot as GPS receivers
+
+        long millis = Math.round(parseDouble(time + 4, timeEnd) * 1000);
+        return epochMillis(year, month, day, digits(time, 2), digits(time + 2, 2), millis);
+    }
+
+    /**
+     * Parses yyyy-MM-ddTHH:mm:ss[.SSS][Z|+hh:mm|-hh:mm]
+     *
+     * @return The epoch millis
+     */
+    private long parseIsoTime(int from, int to) {
+        from = skipSpaces(from, to);
+        int year = digits(from, 4), month = digits(from + 5, 2), day = digits(from + 8, 2);
+        int hour = digits(from + 11, 2), minute = digits(from + 14, 2);
+        int secondsEnd = from + 17;
+        while (secondsEnd < to && (buffer.get(secondsEnd) == '.' || (buffer.get(secondsEnd) >= '0' && buffer.get(secondsEnd) <= '9')))
+            secondsEnd++;
+        long millis = Math.round(parseDouble(from + 17, secondsEnd) * 1000);
+        long offsetMinutes = 0;
+        if (secondsEnd < to && (buffer.get(secondsEnd) == '+' || buffer.get(secondsEnd) == '-')) {
+            offsetMinutes = digits(secondsEnd + 1, 2) * 60 + digits(secondsEnd + 4, 2);
+            if (buffer.get(secondsEnd) == '+')
+                offsetMinutes = -offsetMinutes;
+        }
+        return epochMillis(year, month, day, hour, minute, millis) + offsetMinutes * 60_000L;
+    }
+
+    private int digits(int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9)
+                throw new NumberFormatException("Not a digit");
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Days from the civil calendar, valid for any proleptic Gregorian date
+     */
+    private static long epochMillis(int year, int month, int day, int hour, int minute, long millis) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long days = (long) era * 146097 + dayOfEra - 719468;
+        return ((days * 24 + hour) * 60 + minute) * 60_000L + millis;
+    }
+
+    @NonNull
+    private static byte[] ascii(@NonNull String value) {
+        return value.getBytes(US_ASCII);
+    }
+}
@@ -0,0 +1,23 @@
+package gr.nikolis.gpslib.delivery;
+
+/**
+ * What a subscription does with new fixes when its consumer falls behind
+ */
+public enum DeliveryPolicy {
+    /**
+     * Wait for free space. Slows down the publisher, so use it only for consumers that must see every fix
+     */
+    BLOCK,
+    /**
+     * Discard the oldest queued fix to make space for the new one
+     */
+    DROP_OLDEST,
+    /**
+     * Keep only the newest fix, every undelivered fix is replaced by the next one
+     */
+    LATEST_ONLY,
+    /**
+     * Queue only every Nth fix, discarding the oldest queued one when full
+     */
+    SAMPLE_EVERY_NTH
+}
@@ -0,0 +1,144 @@
+package gr.nikolis.gpslib.delivery;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free queue of a single subscription.
+ * There is one producer (the publishing thread) and one consumer (the subscription thread).
+ * The consumer claims a slot with a CAS on the head, and the producer uses the same CAS to
+ * drop the oldest element, so a consumer that loses the race just reads the next slot.
+ * Slots are never cleared, so at most capacity elements stay referenced after delivery.
+ *
+ * @param <T> The element type
+ */
+final class DeliveryQueue<T> {
+
+    private static final long BLOCK_PARK_NANOS = 100_000L;
+
+    private final DeliveryPolicy policy;
+    private final int mask;
+    private final int sampleRate;
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicReference<T> latest = new AtomicReference<>();
+
+    //producer only
+    private long seen;
+
+    //counters
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong conflated = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * @param policy     The delivery policy
+     * @param capacity   The maximum number of queued elements, rounded up to a power of two
+     * @param sampleRate Every how many elements to keep, used only by {@link DeliveryPolicy#SAMPLE_EVERY_NTH}
+     */
+    DeliveryQueue(@NonNull DeliveryPolicy policy, int capacity, int sampleRate) {
+        if (capacity < 1 || capacity > (1 << 30))
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        if (sampleRate < 1)
+            throw new IllegalArgumentException("Sample rate must be positive: " + sampleRate);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+        this.policy = policy;
+        this.mask = size - 1;
+        this.sampleRate = sampleRate;
+        this.slots = new AtomicReferenceArray<>(policy == DeliveryPolicy.LATEST_ONLY ? 1 : size);
+    }
+
+    /**
+     * Adds an element according to the policy. Must be called from one thread at a time.
+     *
+     * @param element The element
+     */
+    void offer(@NonNull T element) {
+        switch (policy) {
+            case LATEST_ONLY:
+                if (latest.getAndSet(element) != null)
+                    conflated.incrementAndGet();
+                return;
+            case SAMPLE_EVERY_NTH:
+                if (++seen % sampleRate != 0) {
+                    conflated.incrementAndGet();
+                    return;
+                }
+                offerDroppingOldest(element);
+                return;
+            case BLOCK:
+                while (!tryOffer(element)) {
+                    if (closed)
+                        return;
+                    LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+                }
+                return;
+            default:
+                offerDroppingOldest(element);
+        }
+    }
+
+    /**
+     * @return The next element, or null if there is none
+     */
+    @Nullable
+    T poll() {
+        if (policy == DeliveryPolicy.LATEST_ONLY)
+            return latest.getAndSet(null);
+        while (true) {
+            long h = head.get();
+            if (h >= tail.get())
+                return null;
+            T element = slots.get((int) (h & mask));
+            if (head.compareAndSet(h, h + 1))
+                return element;
+        }
+    }
+
+    boolean isEmpty() {
+        if (policy == DeliveryPolicy.LATEST_ONLY)
+            return latest.get() == null;
+        return head.get() >= tail.get();
+    }
+
+    /**
+     * Releases a producer blocked by {@link DeliveryPolicy#BLOCK}
+     */
+    void close() {
+        closed = true;
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    long getConflated() {
+        return conflated.get();
+    }
+
+    private void offerDroppingOldest(@NonNull T element) {
+        while (!tryOffer(element)) {
+            long h = head.get();
+            if (tail.get() - h > mask && head.compareAndSet(h, h + 1))
+                dropped.incrementAndGet();
+        }
+    }
+
+    private boolean tryOffer(@NonNull T element) {
+        long t = tail.get();
+        if (t - head.get() > mask)
+            return false;
+        slots.set((int) (t & mask), element);
+        tail.set(t + 1);
+        return true;
+    }
+}
@@ -0,0 +1,89 @@
+package gr.nikolis.gpslib.delivery;
+
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import gr.nikolis.gpslib.gps.engines.AndroidEngine;
+import gr.nikolis.gpslib.gps.engines.GoogleEngine;
+import gr.nikolis.gpslib.gps.engines.MapBoxEngine;
+import gr.nikolis.gpslib.receiver.MyBroadcastReceiver;
+
+/**
+ * Fans out fixes to {@link Subscription}s without running consumer code on the publishing thread.
+ * Pass it as the listener of any engine, or of {@link MyBroadcastReceiver}, like:
+ * dispatcher = new LocationDispatcher();
+ * googleLocation = new GoogleEngine
+ * .Builder(this, dispatcher)
+ * .build();
+ * Fixes must be published from one thread at a time, which is what the engine callbacks do.
+ */
+public final class LocationDispatcher implements AndroidEngine.OnAndroidListener,
+        GoogleEngine.OnLocationUpdateListener,
+        MapBoxEngine.OnLocationUpdateListener,
+        MyBroadcastReceiver.OnLocationUpdateListener {
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Hands the fix to every subscription queue. Never runs subscriber code,
+     * it only waits when a subscription uses {@link DeliveryPolicy#BLOCK}.
+     *
+     * @param location The new fix
+     */
+    public void publish(@NonNull Location location) {
+        for (Subscription subscription : subscriptions)
+            subscription.publish(location);
+    }
+
+    /**
+     * Cancels all the subscriptions
+     */
+    public void shutdown() {
+        for (Subscription subscription : subscriptions)
+            subscription.cancel();
+    }
+
+    public int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+    void add(@NonNull Subscription subscription) {
+        subscriptions.add(subscription);
+    }
+
+    void remove(@NonNull Subscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    @Override
+    public void getAndroidLocation(Location location) {
+        if (location != null)
+            publish(location);
+    }
+
+    @Override
+    public void getGoogleLocationUpdate(Location location) {
+        if (location != null)
+            publish(location);
+    }
+
+    @Override
+    public void onSuccessLocationUpdate(Location location) {
+        if (location != null)
+            publish(location);
+    }
+
+    @Override
+    public void onFailureLocationUpdate(@NonNull Exception exception) {
+    }
+
+    @Override
+    public void getBroadcastLocationUpdate(Location location) {
+        if (location != null)
+            publish(location);
+    }
+}
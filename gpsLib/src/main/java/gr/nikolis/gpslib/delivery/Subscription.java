@@ -0,0 +1,191 @@
+package gr.nikolis.gpslib.delivery;
+
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One consumer of a {@link LocationDispatcher} with its own bounded queue and delivery thread,
+ * so a slow consumer only delays itself.
+ * Call like:
+ * Subscription subscription = new Subscription
+ * .Builder(dispatcher, this)
+ * .setPolicy(DeliveryPolicy.LATEST_ONLY)
+ * .build();
+ */
+public final class Subscription {
+
+    /**
+     * Callback interface, called from the subscription thread.
+     * A RuntimeException is counted by {@link #getFailed()} and the delivery goes on.
+     */
+    public interface Subscriber {
+        void onLocation(@NonNull Location location);
+    }
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final LocationDispatcher dispatcher;
+    private final Subscriber subscriber;
+    private final DeliveryQueue<Location> queue;
+    private final Thread thread;
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean waiting;
+    private volatile boolean cancelled;
+
+    public static class Builder {
+        //required parameters
+        private final LocationDispatcher dispatcher;
+        private final Subscriber subscriber;
+
+        //optional parameters
+        private DeliveryPolicy policy = DeliveryPolicy.DROP_OLDEST;
+        private int capacity = 16;
+        private int sampleRate = 1;
+
+        /**
+         * The Builder constructor
+         *
+         * @param dispatcher The dispatcher to subscribe to
+         * @param subscriber The consumer
+         */
+        public Builder(@NonNull LocationDispatcher dispatcher, @NonNull Subscriber subscriber) {
+            this.dispatcher = dispatcher;
+            this.subscriber = subscriber;
+        }
+
+        public Builder setPolicy(@NonNull DeliveryPolicy policy) {
+            this.policy = policy;
+            return this;
+        }
+
+        /**
+         * @param capacity The maximum number of queued fixes, rounded up to a power of two
+         */
+        public Builder setCapacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * @param sampleRate Deliver every Nth fix, used by {@link DeliveryPolicy#SAMPLE_EVERY_NTH}
+         */
+        public Builder setSampleRate(int sampleRate) {
+            this.sampleRate = sampleRate;
+            return this;
+        }
+
+        /**
+         * Creates the subscription, starts its thread and attaches it to the dispatcher
+         *
+         * @return The running subscription
+         */
+        public Subscription build() {
+            Subscription subscription = new Subscription(this);
+            subscription.thread.start();
+            dispatcher.add(subscription);
+            return subscription;
+        }
+    }
+
+    private Subscription(@NonNull Builder builder) {
+        this.dispatcher = builder.dispatcher;
+        this.subscriber = builder.subscriber;
+        this.queue = new DeliveryQueue<>(builder.policy, builder.capacity, builder.sampleRate);
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "gpslib-subscription-" + THREAD_COUNT.incrementAndGet());
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Called by the dispatcher on the publishing thread
+     */
+    void publish(@NonNull Location location) {
+        if (cancelled)
+            return;
+        queue.offer(location);
+        if (waiting)
+            LockSupport.unpark(thread);
+    }
+
+    /**
+     * Detaches from the dispatcher and stops the delivery thread. Queued fixes are discarded.
+     */
+    public void cancel() {
+        cancelled = true;
+        dispatcher.remove(this);
+        queue.close();
+        LockSupport.unpark(thread);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return How many fixes reached the subscriber
+     */
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    /**
+     * @return How many fixes the subscriber threw on
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return How many queued fixes were discarded because the queue was full
+     */
+    public long getDropped() {
+        return queue.getDropped();
+    }
+
+    /**
+     * @return How many fixes were replaced by a newer one or skipped by sampling
+     */
+    public long getConflated() {
+        return queue.getConflated();
+    }
+
+    private void drain() {
+        try {
+            while (!cancelled) {
+                Location location = queue.poll();
+                if (location != null) {
+                    deliver(location);
+                    continue;
+                }
+                waiting = true;
+                // check again, a fix may have arrived before the flag was visible
+                if (queue.isEmpty() && !cancelled)
+                    LockSupport.park(this);
+                waiting = false;
+            }
+        } finally {
+            // an Error ended the thread, close the queue so a blocked publisher is released
+            if (!cancelled)
+                cancel();
+        }
+    }
+
+    private void deliver(@NonNull Location location) {
+        try {
+            subscriber.onLocation(location);
+            delivered.incrementAndGet();
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+        }
+    }
+}
@@ -6,10 +6,17 @@ import android.location.Location;
 import android.location.LocationListener;
 import android.location.LocationManager;
 import android.os.Bundle;
+import android.os.Looper;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 
 import java.lang.ref.WeakReference;
+import java.util.concurrent.CancellationException;
+
+import gr.nikolis.gpslib.gps.profile.LocationProfile;
+import gr.nikolis.gpslib.gps.profile.LocationProfiles;
+import gr.nikolis.gpslib.gps.profile.ReconfigurationStats;
 
 public final class AndroidEngine implements LocationListener {
 
@@ -21,10 +28,14 @@ public final class AndroidEngine implements LocationListener {
     private OnAndroidListener onAndroidListener;
 
     //Optional
-    private final long myMinTime, myMinDistance;
+    private volatile LocationProfile profile;
 
     //class parameters
     private LocationManager locationManager;
+    private final Looper looper;
+    private final EngineStartup startup;
+    private boolean destroyed;
+    private final ReconfigurationStats reconfigurationStats = new ReconfigurationStats();
     private static AndroidEngine INSTANCE;
 
     public static class Builder {
@@ -34,15 +45,18 @@ public final class AndroidEngine implements LocationListener {
 
         //optional parameters
         private long minimumTime = 1000;
-        private long minimumDistance = 0;
+        private float minimumDistance = 0;
+        private LocationProfile profile;
         private boolean createSingleInstance;
+        private boolean asyncInit;
+        private EngineStartup.OnReadyListener onReadyListener;
 
         public Builder(Context context, OnAndroidListener onAndroidListener) {
             this.context = context;
             this.onAndroidListener = onAndroidListener;
         }
 
-        public Builder setMinimumDistance(long distance) {
+        public Builder setMinimumDistance(float distance) {
             this.minimumDistance = distance;
             return this;
         }
@@ -57,6 +71,35 @@ public final class AndroidEngine implements LocationListener {
             return this;
         }
 
+        /**
+         * Takes a profile, its name and its request values. Later setters override the values.
+         * The GPS provider uses only the interval and the displacement.
+         *
+         * @param profile The location profile
+         */
+        public Builder setProfile(@NonNull LocationProfile profile) {
+            this.profile = profile;
+            this.minimumTime = profile.getInterval();
+            this.minimumDistance = profile.getDisplacement();
+            return this;
+        }
+
+        /**
+         * @param asyncInit True to register off the calling thread, see {@link EngineStartup}
+         */
+        public Builder setAsyncInit(boolean asyncInit) {
+            this.asyncInit = asyncInit;
+            return this;
+        }
+
+        /**
+         * @param readyListener Notified when the engine is registered, also if build() returns the existing single instance
+         */
+        public Builder setReadyListener(EngineStartup.OnReadyListener readyListener) {
+            this.onReadyListener = readyListener;
+            return this;
+        }
+
         public AndroidEngine build() {
             return getInstance(this);
         }
@@ -68,11 +111,27 @@ public final class AndroidEngine implements LocationListener {
      * @param builder The builder class
      */
     private AndroidEngine(Builder builder) {
-        WeakReference<Context> contextWeakReference = new WeakReference<>(builder.context);
+        final WeakReference<Context> contextWeakReference = new WeakReference<>(builder.context);
         this.onAndroidListener = builder.onAndroidListener;
-        this.myMinDistance = builder.minimumDistance;
-        this.myMinTime = builder.minimumTime;
-        init(contextWeakReference.get());
+        LocationProfile base = builder.profile != null ? builder.profile
+                : new LocationProfile.Builder(LocationProfiles.DEFAULT).build();
+        this.profile = new LocationProfile.Builder(base.getName(), base)
+                .setInterval(builder.minimumTime)
+                .setDisplacement(builder.minimumDistance)
+                .build();
+        // updates are delivered on the builder's thread, even when init runs elsewhere
+        this.looper = Looper.myLooper() != null ? Looper.myLooper() : Looper.getMainLooper();
+        this.startup = new EngineStartup(builder.onReadyListener);
+        if (builder.asyncInit) {
+            EngineStartup.EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    init(contextWeakReference.get());
+                }
+            });
+        } else {
+            init(contextWeakReference.get());
+        }
     }
 
     private synchronized static AndroidEngine getInstance(Builder builder) {
@@ -82,6 +141,9 @@ public final class AndroidEngine implements LocationListener {
                     INSTANCE = new AndroidEngine(builder);
                 }
             } else {
+                // the existing engine keeps its listeners, only the ready listener is added to it
+                if (builder.onReadyListener != null)
+                    INSTANCE.getStartup().addOnReadyListener(builder.onReadyListener);
                 return INSTANCE;
             }
         } else {
@@ -92,12 +154,89 @@ public final class AndroidEngine implements LocationListener {
         return INSTANCE;
     }
 
-    @SuppressLint("MissingPermission")
+    /**
+     * Runs the initialization, any exception fails the startup so waiters are always released
+     */
     private void init(Context context) {
-        locationManager = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
+        try {
+            initProvider(context);
+        } catch (RuntimeException e) {
+            startup.fail(e);
+        }
+    }
 
-        if (locationManager != null)
-            locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER, myMinTime, myMinDistance, this);
+    @SuppressLint("MissingPermission")
+    private void initProvider(Context context) {
+        if (context == null) {
+            startup.fail(new IllegalStateException("The context is no longer available"));
+            return;
+        }
+
+        long lookupStart = EngineStartup.begin();
+        LocationManager manager = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
+        startup.end(EngineStartup.Phase.PROVIDER_LOOKUP, lookupStart);
+        if (manager == null) {
+            startup.fail(new IllegalStateException("There is no location service"));
+            return;
+        }
+
+        synchronized (this) {
+            if (destroyed) {
+                startup.fail(new CancellationException("The engine was destroyed before it was registered"));
+                return;
+            }
+            locationManager = manager;
+            long registrationStart = EngineStartup.begin();
+            register(profile);
+            startup.end(EngineStartup.Phase.REGISTRATION, registrationStart);
+        }
+        startup.ready();
+    }
+
+    /**
+     * @return The startup state and phase timings
+     */
+    public EngineStartup getStartup() {
+        return startup;
+    }
+
+    /**
+     * Registers this listener. A listener is registered only once,
+     * so calling this again replaces the previous request without removing it first.
+     *
+     * @param profile The location profile
+     */
+    @SuppressLint("MissingPermission")
+    private void register(@NonNull LocationProfile profile) {
+        locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER,
+                profile.getInterval(), profile.getDisplacement(), this, looper);
+    }
+
+    /**
+     * Applies a new profile without tearing down the engine.
+     * The registration is replaced only if the request values changed.
+     *
+     * @param newProfile The new location profile
+     * @return True if the provider registration was replaced
+     */
+    public synchronized boolean reconfigure(@NonNull LocationProfile newProfile) {
+        // the GPS provider has no priority, so only interval and displacement matter
+        boolean reRegister = locationManager != null
+                && (profile.getInterval() != newProfile.getInterval()
+                || Float.compare(profile.getDisplacement(), newProfile.getDisplacement()) != 0);
+        profile = newProfile;
+        if (reRegister)
+            register(newProfile);
+        reconfigurationStats.onReconfigure(reRegister);
+        return reRegister;
+    }
+
+    public LocationProfile getProfile() {
+        return profile;
+    }
+
+    public ReconfigurationStats getReconfigurationStats() {
+        return reconfigurationStats;
     }
 
 
@@ -105,8 +244,10 @@ public final class AndroidEngine implements LocationListener {
      * This destructor destroys all instances and removes location updates
      */
     @SuppressLint("MissingPermission")
-    public void destroyInstance() {
-        locationManager.removeUpdates(this);
+    public synchronized void destroyInstance() {
+        destroyed = true;
+        if (locationManager != null)
+            locationManager.removeUpdates(this);
         onAndroidListener = null;
         locationManager = null;
     }
@@ -114,6 +255,7 @@ public final class AndroidEngine implements LocationListener {
 
     @Override
     public void onLocationChanged(@NonNull Location location) {
+       reconfigurationStats.onFix(SystemClock.elapsedRealtimeNanos());
        if (onAndroidListener != null)
            onAndroidListener.getAndroidLocation(location);
     }
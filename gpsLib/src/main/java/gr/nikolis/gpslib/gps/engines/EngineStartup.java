@@ -0,0 +1,187 @@
+package gr.nikolis.gpslib.gps.engines;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The startup of an engine: whether it is registered yet and how long each phase took.
+ * Engines built with setAsyncInit(true) do their provider lookups on a background thread,
+ * so building them on the main thread returns immediately. Wait for readiness like:
+ * engine.getStartup().addOnReadyListener(this);
+ */
+public final class EngineStartup {
+
+    public enum Phase {
+        /**
+         * Resolving the provider client or the best location engine
+         */
+        PROVIDER_LOOKUP,
+        /**
+         * Checking the device location settings, runs in parallel with the registration
+         */
+        SETTINGS_CHECK,
+        /**
+         * Fetching the last known location, runs in parallel with the registration
+         */
+        LAST_LOCATION,
+        /**
+         * Requesting the location updates, the engine is ready when this succeeds
+         */
+        REGISTRATION
+    }
+
+    /**
+     * Called on the main thread, exactly once per added listener
+     */
+    public interface OnReadyListener {
+        void onReady(@NonNull EngineStartup startup);
+
+        void onFailure(@NonNull Exception exception);
+    }
+
+    /**
+     * Shared by all engines, the lookups are short so one thread is enough
+     */
+    static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "gpslib-engine-startup");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private static final long NOT_DONE = -1;
+
+    private final long createdNanos = SystemClock.elapsedRealtimeNanos();
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile long readyNanos = NOT_DONE;
+    private volatile Exception failure;
+    private List<OnReadyListener> onReadyListeners = new ArrayList<>();
+
+    EngineStartup(@Nullable OnReadyListener onReadyListener) {
+        if (onReadyListener != null)
+            onReadyListeners.add(onReadyListener);
+        for (int i = 0; i < phaseNanos.length; i++)
+            phaseNanos[i] = NOT_DONE;
+    }
+
+    /**
+     * @return The start of a phase, to pass to {@link #end(Phase, long)}
+     */
+    static long begin() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    synchronized void end(@NonNull Phase phase, long startNanos) {
+        phaseNanos[phase.ordinal()] = SystemClock.elapsedRealtimeNanos() - startNanos;
+    }
+
+    void ready() {
+        List<OnReadyListener> listeners;
+        synchronized (this) {
+            if (done.getCount() == 0)
+                return;
+            readyNanos = SystemClock.elapsedRealtimeNanos();
+            done.countDown();
+            listeners = onReadyListeners;
+            onReadyListeners = null;
+        }
+        for (OnReadyListener listener : listeners)
+            notifyListener(listener);
+    }
+
+    void fail(@NonNull Exception exception) {
+        List<OnReadyListener> listeners;
+        synchronized (this) {
+            if (done.getCount() == 0)
+                return;
+            failure = exception;
+            done.countDown();
+            listeners = onReadyListeners;
+            onReadyListeners = null;
+        }
+        for (OnReadyListener listener : listeners)
+            notifyListener(listener);
+    }
+
+    /**
+     * Adds a listener, or notifies it right away if the startup is already over
+     *
+     * @param listener The listener
+     */
+    public void addOnReadyListener(@NonNull OnReadyListener listener) {
+        synchronized (this) {
+            if (done.getCount() != 0) {
+                onReadyListeners.add(listener);
+                return;
+            }
+        }
+        notifyListener(listener);
+    }
+
+    /**
+     * Blocks until the engine is registered or failed. Never call this from the main thread.
+     *
+     * @return False on timeout
+     * @throws InterruptedException If the waiting thread is interrupted
+     */
+    public boolean awaitReady(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    public boolean isReady() {
+        return readyNanos != NOT_DONE;
+    }
+
+    /**
+     * @return The startup failure, or null
+     */
+    @Nullable
+    public Exception getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return The duration of the phase, or -1 if it did not finish (yet)
+     */
+    public synchronized long getPhaseNanos(@NonNull Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * @return From building the engine to ready, or -1 if not ready (yet)
+     */
+    public long getTotalNanos() {
+        long ready = readyNanos;
+        return ready == NOT_DONE ? NOT_DONE : ready - createdNanos;
+    }
+
+    private void notifyListener(@Nullable final OnReadyListener listener) {
+        if (listener == null)
+            return;
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                Exception exception = failure;
+                if (exception != null)
+                    listener.onFailure(exception);
+                else
+                    listener.onReady(EngineStartup.this);
+            }
+        });
+    }
+}
@@ -4,6 +4,7 @@ import android.annotation.SuppressLint;
 import android.content.Context;
 import android.location.Location;
 import android.os.Looper;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 
@@ -13,10 +14,19 @@ import com.google.android.gms.location.LocationRequest;
 import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.location.LocationSettingsRequest;
+import com.google.android.gms.location.LocationSettingsResponse;
 import com.google.android.gms.location.SettingsClient;
+import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+import com.mapbox.android.core.location.LocationEngineRequest;
 
 import java.lang.ref.WeakReference;
+import java.util.concurrent.CancellationException;
+
+import gr.nikolis.gpslib.gps.profile.LocationProfile;
+import gr.nikolis.gpslib.gps.profile.LocationProfiles;
+import gr.nikolis.gpslib.gps.profile.ReconfigurationStats;
 
 import static gr.nikolis.gpslib.Common.MPS_to_KPH;
 
@@ -31,6 +41,7 @@ import static gr.nikolis.gpslib.Common.MPS_to_KPH;
  * .setSpeedListener(this)
  * .setSuccessListener(this)
  * .hasSingleInstance(true)
+ * .setAsyncInit(true)
  * .build();
  */
 public final class GoogleEngine extends LocationCallback implements OnSuccessListener<Location> {
@@ -54,14 +65,16 @@ public final class GoogleEngine extends LocationCallback implements OnSuccessLis
     private OnLocationUpdateListener onLocationUpdateListener;
 
     //optional parameters
-    private final long UPDATE_INTERVAL;
-    private final long FASTEST_INTERVAL;
-    private final int PRIORITY;
+    private volatile LocationProfile profile;
     private OnSpeedUpdateListener onSpeedUpdateListener;
     private OnSuccessListener onSuccessListener;
 
     //class parameters
     private FusedLocationProviderClient fusedLocationProviderClient;
+    private final Looper looper;
+    private final EngineStartup startup;
+    private boolean destroyed;
+    private final ReconfigurationStats reconfigurationStats = new ReconfigurationStats();
     private static GoogleEngine INSTANCE;
 
     public static class Builder {
@@ -74,9 +87,14 @@ public final class GoogleEngine extends LocationCallback implements OnSuccessLis
         private int priority = LocationRequest.PRIORITY_HIGH_ACCURACY;
         private long update_interval = 1000;
         private long fastest_interval = 1;
+        private long max_wait_time = 0;
+        private float displacement = 0.0f;
+        private LocationProfile profile;
         private OnSpeedUpdateListener onSpeedUpdateListener;
         private boolean createSingleInstance;
         private OnSuccessListener onSuccessListener;
+        private boolean asyncInit;
+        private EngineStartup.OnReadyListener onReadyListener;
 
         /**
          * The Builder constructor
@@ -118,6 +136,37 @@ public final class GoogleEngine extends LocationCallback implements OnSuccessLis
             return this;
         }
 
+        /**
+         * @param asyncInit True to look up the provider off the calling thread, see {@link EngineStartup}
+         */
+        public Builder setAsyncInit(boolean asyncInit) {
+            this.asyncInit = asyncInit;
+            return this;
+        }
+
+        /**
+         * @param readyListener Notified when the engine is registered, also if build() returns the existing single instance
+         */
+        public Builder setReadyListener(EngineStartup.OnReadyListener readyListener) {
+            this.onReadyListener = readyListener;
+            return this;
+        }
+
+        /**
+         * Takes a profile, its name and its request values. Later setters override the values.
+         *
+         * @param profile The location profile
+         */
+        public Builder setProfile(@NonNull LocationProfile profile) {
+            this.profile = profile;
+            this.priority = toGooglePriority(profile.getPriority());
+            this.update_interval = profile.getInterval();
+            this.fastest_interval = profile.getFastestInterval();
+            this.max_wait_time = profile.getMaxWaitTime();
+            this.displacement = profile.getDisplacement();
+            return this;
+        }
+
         public GoogleEngine build() {
             return getInstance(this);
         }
@@ -129,14 +178,32 @@ public final class GoogleEngine extends LocationCallback implements OnSuccessLis
      * @param builder The builder class
      */
     private GoogleEngine(@NonNull Builder builder) {
-        WeakReference<Context> contextWeakReference = new WeakReference<>(builder.context);
+        final WeakReference<Context> contextWeakReference = new WeakReference<>(builder.context);
         this.onLocationUpdateListener = builder.onLocationUpdateListener;
-        this.UPDATE_INTERVAL = builder.update_interval;
-        this.FASTEST_INTERVAL = builder.fastest_interval;
-        this.PRIORITY = builder.priority;
+        LocationProfile base = builder.profile != null ? builder.profile
+                : new LocationProfile.Builder(LocationProfiles.DEFAULT).build();
+        this.profile = new LocationProfile.Builder(base.getName(), base)
+                .setPriority(fromGooglePriority(builder.priority))
+                .setInterval(builder.update_interval)
+                .setFastestInterval(builder.fastest_interval)
+                .setMaxWaitTime(builder.max_wait_time)
+                .setDisplacement(builder.displacement)
+                .build();
         this.onSpeedUpdateListener = builder.onSpeedUpdateListener;
         this.onSuccessListener = builder.onSuccessListener;
-        init(contextWeakReference.get());
+        // updates are delivered on the builder's thread, even when init runs elsewhere
+        this.looper = Looper.myLooper() != null ? Looper.myLooper() : Looper.getMainLooper();
+        this.startup = new EngineStartup(builder.onReadyListener);
+        if (builder.asyncInit) {
+            EngineStartup.EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    init(contextWeakReference.get());
+                }
+            });
+        } else {
+            init(contextWeakReference.get());
+        }
     }
 
     /**
@@ -153,6 +220,9 @@ public final class GoogleEngine extends LocationCallback implements OnSuccessLis
                     INSTANCE = new GoogleEngine(builder);
                 }
             } else {
+                // the existing engine keeps its listeners, only the ready listener is added to it
+                if (builder.onReadyListener != null)
+                    INSTANCE.getStartup().addOnReadyListener(builder.onReadyListener);
                 return INSTANCE;
             }
         } else {
@@ -166,7 +236,8 @@ public final class GoogleEngine extends LocationCallback implements OnSuccessLis
     /**
      * This destructor destroys all instances and removes location updates
      */
-    public void destroyInstance() {
+    public synchronized void destroyInstance() {
+        destroyed = true;
         if (fusedLocationProviderClient != null)
             fusedLocationProviderClient.removeLocationUpdates(this);
         fusedLocationProviderClient = null;
@@ -185,6 +256,7 @@ public final class GoogleEngine extends LocationCallback implements OnSuccessLis
 
     @Override
     public void onLocationResult(@NonNull LocationResult locationResult) {
+        reconfigurationStats.onFix(SystemClock.elapsedRealtimeNanos());
         for (Location location : locationResult.getLocations()) {
             if (location != null) {
                 onLocationUpdateListener.getGoogleLocationUpdate(location);
@@ -201,18 +273,59 @@ public final class GoogleEngine extends LocationCallback implements OnSuccessLis
     }
 
     /**
-     * initialize provider
+     * Runs the initialization, any exception fails the startup so waiters are always released
+     */
+    private void init(Context context) {
+        try {
+            initProvider(context);
+        } catch (RuntimeException e) {
+            startup.fail(e);
+        }
+    }
+
+    /**
+     * initialize provider.
+     * The registration goes first, the settings check and the last location run in parallel with it.
      *
      * @param context The activity context
      */
     @SuppressLint("MissingPermission")
-    private void init(Context context) {
+    private void initProvider(Context context) {
+        if (context == null) {
+            startup.fail(new IllegalStateException("The context is no longer available"));
+            return;
+        }
+
+        long lookupStart = EngineStartup.begin();
+        SettingsClient settingsClient = LocationServices.getSettingsClient(context);
+        FusedLocationProviderClient client = LocationServices.getFusedLocationProviderClient(context);
+        startup.end(EngineStartup.Phase.PROVIDER_LOOKUP, lookupStart);
 
         // Create the location request to start receiving updates
-        LocationRequest locationRequest = new LocationRequest();
-        locationRequest.setPriority(PRIORITY);
-        locationRequest.setInterval(UPDATE_INTERVAL);
-        locationRequest.setFastestInterval(FASTEST_INTERVAL);
+        LocationRequest locationRequest;
+        synchronized (this) {
+            if (destroyed) {
+                startup.fail(new CancellationException("The engine was destroyed before it was registered"));
+                return;
+            }
+            fusedLocationProviderClient = client;
+            locationRequest = createLocationRequest(profile);
+            final long registrationStart = EngineStartup.begin();
+            client.requestLocationUpdates(locationRequest, this, looper)
+                    .addOnCompleteListener(new OnCompleteListener<Void>() {
+                        @Override
+                        public void onComplete(@NonNull Task<Void> task) {
+                            startup.end(EngineStartup.Phase.REGISTRATION, registrationStart);
+                            if (isDestroyed())
+                                startup.fail(new CancellationException("The engine was destroyed while it was being registered"));
+                            else if (task.isSuccessful())
+                                startup.ready();
+                            else
+                                startup.fail(task.getException() != null ? task.getException()
+                                        : new IllegalStateException("Location updates request failed"));
+                        }
+                    });
+        }
 
         // Create LocationSettingsRequest object using location request
         LocationSettingsRequest.Builder builder = new LocationSettingsRequest.Builder();
@@ -222,11 +335,100 @@ public final class GoogleEngine extends LocationCallback implements OnSuccessLis
 
         // Check whether location settings are satisfied
         // https://developers.google.com/android/reference/com/google/android/gms/location/SettingsClient
-        SettingsClient settingsClient = LocationServices.getSettingsClient(context);
-        settingsClient.checkLocationSettings(locationSettingsRequest);
+        final long settingsStart = EngineStartup.begin();
+        settingsClient.checkLocationSettings(locationSettingsRequest)
+                .addOnCompleteListener(new OnCompleteListener<LocationSettingsResponse>() {
+                    @Override
+                    public void onComplete(@NonNull Task<LocationSettingsResponse> task) {
+                        startup.end(EngineStartup.Phase.SETTINGS_CHECK, settingsStart);
+                    }
+                });
+
+        final long lastLocationStart = EngineStartup.begin();
+        client.getLastLocation()
+                .addOnSuccessListener(this)
+                .addOnCompleteListener(new OnCompleteListener<Location>() {
+                    @Override
+                    public void onComplete(@NonNull Task<Location> task) {
+                        startup.end(EngineStartup.Phase.LAST_LOCATION, lastLocationStart);
+                    }
+                });
+    }
+
+    private synchronized boolean isDestroyed() {
+        return destroyed;
+    }
+
+    /**
+     * @return The startup state and phase timings
+     */
+    public EngineStartup getStartup() {
+        return startup;
+    }
+
+    /**
+     * Applies a new profile without tearing down the engine.
+     * Requesting updates again with the same callback replaces the previous request,
+     * so there is never a moment without a registration.
+     *
+     * @param newProfile The new location profile
+     * @return True if the provider registration was replaced
+     */
+    @SuppressLint("MissingPermission")
+    public synchronized boolean reconfigure(@NonNull LocationProfile newProfile) {
+        boolean reRegister = fusedLocationProviderClient != null && profile.needsReRegistration(newProfile);
+        profile = newProfile;
+        if (reRegister)
+            fusedLocationProviderClient.requestLocationUpdates(createLocationRequest(newProfile), this, looper);
+        reconfigurationStats.onReconfigure(reRegister);
+        return reRegister;
+    }
+
+    public LocationProfile getProfile() {
+        return profile;
+    }
 
-        fusedLocationProviderClient = LocationServices.getFusedLocationProviderClient(context);
-        fusedLocationProviderClient.getLastLocation().addOnSuccessListener(this);
-        fusedLocationProviderClient.requestLocationUpdates(locationRequest, this, Looper.myLooper());
+    public ReconfigurationStats getReconfigurationStats() {
+        return reconfigurationStats;
+    }
+
+    @NonNull
+    private static LocationRequest createLocationRequest(@NonNull LocationProfile profile) {
+        LocationRequest locationRequest = new LocationRequest();
+        locationRequest.setPriority(toGooglePriority(profile.getPriority()));
+        locationRequest.setInterval(profile.getInterval());
+        locationRequest.setFastestInterval(profile.getFastestInterval());
+        locationRequest.setMaxWaitTime(profile.getMaxWaitTime());
+        locationRequest.setSmallestDisplacement(profile.getDisplacement());
+        return locationRequest;
+    }
+
+    /**
+     * Profiles use the {@link LocationEngineRequest} priorities, map them to the {@link LocationRequest} ones
+     */
+    private static int toGooglePriority(int priority) {
+        switch (priority) {
+            case LocationEngineRequest.PRIORITY_BALANCED_POWER_ACCURACY:
+                return LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY;
+            case LocationEngineRequest.PRIORITY_LOW_POWER:
+                return LocationRequest.PRIORITY_LOW_POWER;
+            case LocationEngineRequest.PRIORITY_NO_POWER:
+                return LocationRequest.PRIORITY_NO_POWER;
+            default:
+                return LocationRequest.PRIORITY_HIGH_ACCURACY;
+        }
+    }
+
+    private static int fromGooglePriority(int priority) {
+        switch (priority) {
+            case LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY:
+                return LocationEngineRequest.PRIORITY_BALANCED_POWER_ACCURACY;
+            case LocationRequest.PRIORITY_LOW_POWER:
+                return LocationEngineRequest.PRIORITY_LOW_POWER;
+            case LocationRequest.PRIORITY_NO_POWER:
+                return LocationEngineRequest.PRIORITY_NO_POWER;
+            default:
+                return LocationEngineRequest.PRIORITY_HIGH_ACCURACY;
+        }
     }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import android.annotation.SuppressLint;
 import android.content.Context;
 import android.location.Location;
 import android.os.Looper;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 
@@ -14,6 +15,11 @@ import com.mapbox.android.core.location.LocationEngineRequest;
 import com.mapbox.android.core.location.LocationEngineResult;
 
 import java.lang.ref.WeakReference;
+import java.util.concurrent.CancellationException;
+
+import gr.nikolis.gpslib.gps.profile.LocationProfile;
+import gr.nikolis.gpslib.gps.profile.LocationProfiles;
+import gr.nikolis.gpslib.gps.profile.ReconfigurationStats;
 
 public final class MapBoxEngine implements LocationEngineCallback<LocationEngineResult> {
 
@@ -27,13 +33,15 @@ public final class MapBoxEngine implements LocationEngineCallback<LocationEngine
     private OnLocationUpdateListener onLocationUpdateListener;
 
     //optional parameters
-    private final long maxWaitTime, interval, fastestInterval;
-    private final int priority;
-    private final float displacement;
+    private volatile LocationProfile profile;
 
     //class parameters
     private static MapBoxEngine INSTANCE;
     private LocationEngine locationEngine;
+    private final Looper looper;
+    private final EngineStartup startup;
+    private boolean destroyed;
+    private final ReconfigurationStats reconfigurationStats = new ReconfigurationStats();
 
     public static class Builder {
         //required parameters
@@ -44,7 +52,10 @@ public final class MapBoxEngine implements LocationEngineCallback<LocationEngine
         private long maxWaitTime = 0L, interval = 0L, fastestInterval = 1000L;
         private int priority = LocationEngineRequest.PRIORITY_HIGH_ACCURACY;
         private float displacement = 0.0f;
+        private LocationProfile profile;
         private boolean createSingleInstance;
+        private boolean asyncInit;
+        private EngineStartup.OnReadyListener onReadyListener;
 
         /**
          * The Builder constructor
@@ -86,6 +97,37 @@ public final class MapBoxEngine implements LocationEngineCallback<LocationEngine
             return this;
         }
 
+        /**
+         * Takes a profile, its name and its request values. Later setters override the values.
+         *
+         * @param profile The location profile
+         */
+        public Builder setProfile(@NonNull LocationProfile profile) {
+            this.profile = profile;
+            this.priority = profile.getPriority();
+            this.interval = profile.getInterval();
+            this.fastestInterval = profile.getFastestInterval();
+            this.maxWaitTime = profile.getMaxWaitTime();
+            this.displacement = profile.getDisplacement();
+            return this;
+        }
+
+        /**
+         * @param asyncInit True to resolve the best location engine off the calling thread, see {@link EngineStartup}
+         */
+        public Builder setAsyncInit(boolean asyncInit) {
+            this.asyncInit = asyncInit;
+            return this;
+        }
+
+        /**
+         * @param readyListener Notified when the engine is registered, also if build() returns the existing single instance
+         */
+        public Builder setReadyListener(EngineStartup.OnReadyListener readyListener) {
+            this.onReadyListener = readyListener;
+            return this;
+        }
+
         public MapBoxEngine build() {
             return getInstance(this);
         }
@@ -96,14 +138,30 @@ public final class MapBoxEngine implements LocationEngineCallback<LocationEngine
      *
      * @param builder The builder class
      */
-    private MapBoxEngine(@NonNull Builder builder) {
+    private MapBoxEngine(@NonNull final Builder builder) {
         this.onLocationUpdateListener = builder.onLocationUpdateListener;
-        this.maxWaitTime = builder.maxWaitTime;
-        this.interval = builder.interval;
-        this.priority = builder.priority;
-        this.displacement = builder.displacement;
-        this.fastestInterval = builder.fastestInterval;
-        init(builder.contextWeakReference.get());
+        LocationProfile base = builder.profile != null ? builder.profile
+                : new LocationProfile.Builder(LocationProfiles.DEFAULT).build();
+        this.profile = new LocationProfile.Builder(base.getName(), base)
+                .setPriority(builder.priority)
+                .setInterval(builder.interval)
+                .setFastestInterval(builder.fastestInterval)
+                .setMaxWaitTime(builder.maxWaitTime)
+                .setDisplacement(builder.displacement)
+                .build();
+        // updates are delivered on the builder's thread, even when init runs elsewhere
+        this.looper = Looper.myLooper() != null ? Looper.myLooper() : Looper.getMainLooper();
+        this.startup = new EngineStartup(builder.onReadyListener);
+        if (builder.asyncInit) {
+            EngineStartup.EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    init(builder.contextWeakReference.get());
+                }
+            });
+        } else {
+            init(builder.contextWeakReference.get());
+        }
     }
 
     /**
@@ -120,6 +178,9 @@ public final class MapBoxEngine implements LocationEngineCallback<LocationEngine
                     INSTANCE = new MapBoxEngine(builder);
                 }
             } else {
+                // the existing engine keeps its listeners, only the ready listener is added to it
+                if (builder.onReadyListener != null)
+                    INSTANCE.getStartup().addOnReadyListener(builder.onReadyListener);
                 return INSTANCE;
             }
         } else {
@@ -133,32 +194,102 @@ public final class MapBoxEngine implements LocationEngineCallback<LocationEngine
     /**
      * This destructor destroys all instances and removes location updates
      */
-    public void destroyInstance() {
-        locationEngine.removeLocationUpdates(this);
+    public synchronized void destroyInstance() {
+        destroyed = true;
+        if (locationEngine != null)
+            locationEngine.removeLocationUpdates(this);
+        locationEngine = null;
         onLocationUpdateListener = null;
         INSTANCE = null;
     }
 
+    /**
+     * Runs the initialization, any exception fails the startup so waiters are always released
+     */
+    private void init(Context context) {
+        try {
+            initProvider(context);
+        } catch (RuntimeException e) {
+            startup.fail(e);
+        }
+    }
+
     /**
      * initialize location engine provider
      *
      * @param context The activity context
      */
     @SuppressLint("MissingPermission")
-    private void init(Context context) {
-        locationEngine = LocationEngineProvider.getBestLocationEngine(context);
-        LocationEngineRequest request = new LocationEngineRequest
-                .Builder(interval)
-                .setPriority(priority)
-                .setMaxWaitTime(maxWaitTime)
-                .setDisplacement(displacement)
-                .setFastestInterval(fastestInterval)
+    private void initProvider(Context context) {
+        if (context == null) {
+            startup.fail(new IllegalStateException("The context is no longer available"));
+            return;
+        }
+
+        long lookupStart = EngineStartup.begin();
+        LocationEngine bestLocationEngine = LocationEngineProvider.getBestLocationEngine(context);
+        startup.end(EngineStartup.Phase.PROVIDER_LOOKUP, lookupStart);
+
+        synchronized (this) {
+            if (destroyed) {
+                startup.fail(new CancellationException("The engine was destroyed before it was registered"));
+                return;
+            }
+            locationEngine = bestLocationEngine;
+            long registrationStart = EngineStartup.begin();
+            locationEngine.requestLocationUpdates(createRequest(profile), this, looper);
+            startup.end(EngineStartup.Phase.REGISTRATION, registrationStart);
+        }
+        startup.ready();
+    }
+
+    /**
+     * @return The startup state and phase timings
+     */
+    public EngineStartup getStartup() {
+        return startup;
+    }
+
+    /**
+     * Applies a new profile without tearing down the engine.
+     * Requesting updates again with the same callback replaces the previous request,
+     * so there is never a moment without a registration.
+     *
+     * @param newProfile The new location profile
+     * @return True if the provider registration was replaced
+     */
+    @SuppressLint("MissingPermission")
+    public synchronized boolean reconfigure(@NonNull LocationProfile newProfile) {
+        boolean reRegister = locationEngine != null && profile.needsReRegistration(newProfile);
+        profile = newProfile;
+        if (reRegister)
+            locationEngine.requestLocationUpdates(createRequest(newProfile), this, looper);
+        reconfigurationStats.onReconfigure(reRegister);
+        return reRegister;
+    }
+
+    public LocationProfile getProfile() {
+        return profile;
+    }
+
+    public ReconfigurationStats getReconfigurationStats() {
+        return reconfigurationStats;
+    }
+
+    @NonNull
+    private static LocationEngineRequest createRequest(@NonNull LocationProfile profile) {
+        return new LocationEngineRequest
+                .Builder(profile.getInterval())
+                .setPriority(profile.getPriority())
+                .setMaxWaitTime(profile.getMaxWaitTime())
+                .setDisplacement(profile.getDisplacement())
+                .setFastestInterval(profile.getFastestInterval())
                 .build();
-        locationEngine.requestLocationUpdates(request, this, Looper.myLooper());
     }
 
     @Override
     public void onSuccess(LocationEngineResult result) {
+        reconfigurationStats.onFix(SystemClock.elapsedRealtimeNanos());
         if (result.getLastLocation() != null && onLocationUpdateListener != null)
             onLocationUpdateListener.onSuccessLocationUpdate(result.getLastLocation());
     }
@@ -0,0 +1,192 @@
+package gr.nikolis.gpslib.gps.profile;
+
+import androidx.annotation.NonNull;
+
+import com.mapbox.android.core.location.LocationEngineRequest;
+
+import static gr.nikolis.gpslib.Common.DISPLACEMENT;
+import static gr.nikolis.gpslib.Common.FASTEST_INTERVAL;
+import static gr.nikolis.gpslib.Common.INTERVAL;
+import static gr.nikolis.gpslib.Common.MAX_WAIT_TIME;
+import static gr.nikolis.gpslib.Common.PRIORITY;
+
+/**
+ * Immutable set of sampling settings, shared by all engines.
+ * The priority uses the {@link LocationEngineRequest} constants, like {@link gr.nikolis.gpslib.Common#PRIORITY}.
+ * Call from anywhere like:
+ * LocationProfile profile = new LocationProfile
+ * .Builder("walking")
+ * .setPriority(LocationEngineRequest.PRIORITY_BALANCED_POWER_ACCURACY)
+ * .setInterval(5000)
+ * .setDisplacement(5.0f)
+ * .build();
+ */
+public final class LocationProfile {
+
+    private final String name;
+    private final int priority;
+    private final long interval, fastestInterval, maxWaitTime;
+    private final float displacement;
+
+    public static class Builder {
+        //required parameters
+        private final String name;
+
+        //optional parameters
+        private int priority = PRIORITY;
+        private long interval = INTERVAL, fastestInterval = FASTEST_INTERVAL, maxWaitTime = MAX_WAIT_TIME;
+        private float displacement = DISPLACEMENT;
+
+        /**
+         * The Builder constructor
+         *
+         * @param name The profile name
+         */
+        public Builder(@NonNull String name) {
+            this.name = name;
+        }
+
+        /**
+         * Starts from an existing profile
+         *
+         * @param name    The new profile name
+         * @param profile The profile to copy
+         */
+        public Builder(@NonNull String name, @NonNull LocationProfile profile) {
+            this.name = name;
+            this.priority = profile.priority;
+            this.interval = profile.interval;
+            this.fastestInterval = profile.fastestInterval;
+            this.maxWaitTime = profile.maxWaitTime;
+            this.displacement = profile.displacement;
+        }
+
+        /**
+         * @param priority One of the {@link LocationEngineRequest} priorities, others are rejected by build()
+         */
+        public Builder setPriority(int priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        public Builder setInterval(long interval) {
+            this.interval = interval;
+            return this;
+        }
+
+        public Builder setFastestInterval(long fastestInterval) {
+            this.fastestInterval = fastestInterval;
+            return this;
+        }
+
+        public Builder setMaxWaitTime(long maxWaitTime) {
+            this.maxWaitTime = maxWaitTime;
+            return this;
+        }
+
+        public Builder setDisplacement(float displacement) {
+            this.displacement = displacement;
+            return this;
+        }
+
+        public LocationProfile build() {
+            if (interval < 0 || fastestInterval < 0 || maxWaitTime < 0 || displacement < 0)
+                throw new IllegalArgumentException("Profile " + name + " has negative values");
+            if (!isPriority(priority))
+                throw new IllegalArgumentException("Profile " + name + " has an unknown priority: " + priority);
+            return new LocationProfile(this);
+        }
+
+        private static boolean isPriority(int priority) {
+            switch (priority) {
+                case LocationEngineRequest.PRIORITY_HIGH_ACCURACY:
+                case LocationEngineRequest.PRIORITY_BALANCED_POWER_ACCURACY:
+                case LocationEngineRequest.PRIORITY_LOW_POWER:
+                case LocationEngineRequest.PRIORITY_NO_POWER:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    private LocationProfile(@NonNull Builder builder) {
+        this.name = builder.name;
+        this.priority = builder.priority;
+        this.interval = builder.interval;
+        this.fastestInterval = builder.fastestInterval;
+        this.maxWaitTime = builder.maxWaitTime;
+        this.displacement = builder.displacement;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public long getFastestInterval() {
+        return fastestInterval;
+    }
+
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    public float getDisplacement() {
+        return displacement;
+    }
+
+    /**
+     * Check if the provider registration has to be replaced to apply the other profile.
+     * The name alone does not matter to the provider.
+     *
+     * @param other The new profile
+     * @return True if any of the request values differ
+     */
+    public boolean needsReRegistration(@NonNull LocationProfile other) {
+        return priority != other.priority
+                || interval != other.interval
+                || fastestInterval != other.fastestInterval
+                || maxWaitTime != other.maxWaitTime
+                || Float.compare(displacement, other.displacement) != 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LocationProfile)) return false;
+        LocationProfile that = (LocationProfile) o;
+        return name.equals(that.name) && !needsReRegistration(that);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = name.hashCode();
+        result = 31 * result + priority;
+        result = 31 * result + (int) (interval ^ (interval >>> 32));
+        result = 31 * result + (int) (fastestInterval ^ (fastestInterval >>> 32));
+        result = 31 * result + (int) (maxWaitTime ^ (maxWaitTime >>> 32));
+        result = 31 * result + Float.floatToIntBits(displacement);
+        return result;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "LocationProfile{" +
+                "name='" + name + '\'' +
+                ", priority=" + priority +
+                ", interval=" + interval +
+                ", fastestInterval=" + fastestInterval +
+                ", maxWaitTime=" + maxWaitTime +
+                ", displacement=" + displacement +
+                '}';
+    }
+}
@@ -0,0 +1,145 @@
+package gr.nikolis.gpslib.gps.profile;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mapbox.android.core.location.LocationEngineRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Runtime registry of named location profiles.
+ * Profiles can be registered from code or loaded from a properties file (e.g. an asset) like:
+ * walking.priority=balanced
+ * walking.interval=5000
+ * walking.fastestInterval=2000
+ * walking.maxWaitTime=0
+ * walking.displacement=5.0
+ * Missing keys fall back to the {@link #DEFAULT} profile values.
+ */
+public final class LocationProfiles {
+
+    /**
+     * Intent extra that asks a running service to switch to the named profile
+     */
+    public static final String EXTRA_PROFILE_NAME = "profile_name";
+
+    public static final String DEFAULT = "default";
+
+    private static final String PRIORITY = "priority";
+    private static final String INTERVAL = "interval";
+    private static final String FASTEST_INTERVAL = "fastestInterval";
+    private static final String MAX_WAIT_TIME = "maxWaitTime";
+    private static final String DISPLACEMENT = "displacement";
+
+    private static final Map<String, LocationProfile> PROFILES = new HashMap<>();
+
+    static {
+        register(new LocationProfile.Builder(DEFAULT).build());
+    }
+
+    private LocationProfiles() {
+    }
+
+    /**
+     * Adds or replaces a profile with the same name
+     *
+     * @param profile The profile
+     */
+    public static synchronized void register(@NonNull LocationProfile profile) {
+        PROFILES.put(profile.getName(), profile);
+    }
+
+    /**
+     * @param name The profile name
+     * @return The profile, or null if there is not such a profile
+     */
+    @Nullable
+    public static synchronized LocationProfile get(@Nullable String name) {
+        return name == null ? null : PROFILES.get(name);
+    }
+
+    /**
+     * @return The names of all the registered profiles
+     */
+    public static synchronized Set<String> getNames() {
+        return new HashSet<>(PROFILES.keySet());
+    }
+
+    /**
+     * Loads and registers every profile of a properties stream.
+     * Nothing is registered if any key or value is invalid. The stream is not closed.
+     *
+     * @param inputStream The properties stream
+     * @throws IOException              If the stream can not be read
+     * @throws IllegalArgumentException If a key is unknown or a value can not be parsed
+     */
+    public static void load(@NonNull InputStream inputStream) throws IOException {
+        Properties properties = new Properties();
+        properties.load(inputStream);
+
+        Set<String> names = new HashSet<>();
+        for (String key : properties.stringPropertyNames()) {
+            int dot = key.lastIndexOf('.');
+            if (dot <= 0 || !isProperty(key.substring(dot + 1)))
+                throw new IllegalArgumentException("Unknown profile property " + key);
+            names.add(key.substring(0, dot));
+        }
+
+        LocationProfile base = get(DEFAULT);
+        List<LocationProfile> profiles = new ArrayList<>();
+        for (String name : names) {
+            LocationProfile.Builder builder = new LocationProfile.Builder(name, base);
+            String value;
+            if ((value = properties.getProperty(name + '.' + PRIORITY)) != null)
+                builder.setPriority(parsePriority(value.trim()));
+            if ((value = properties.getProperty(name + '.' + INTERVAL)) != null)
+                builder.setInterval(Long.parseLong(value.trim()));
+            if ((value = properties.getProperty(name + '.' + FASTEST_INTERVAL)) != null)
+                builder.setFastestInterval(Long.parseLong(value.trim()));
+            if ((value = properties.getProperty(name + '.' + MAX_WAIT_TIME)) != null)
+                builder.setMaxWaitTime(Long.parseLong(value.trim()));
+            if ((value = properties.getProperty(name + '.' + DISPLACEMENT)) != null)
+                builder.setDisplacement(Float.parseFloat(value.trim()));
+            profiles.add(builder.build());
+        }
+        for (LocationProfile profile : profiles)
+            register(profile);
+    }
+
+    private static boolean isProperty(@NonNull String suffix) {
+        return PRIORITY.equals(suffix)
+                || INTERVAL.equals(suffix)
+                || FASTEST_INTERVAL.equals(suffix)
+                || MAX_WAIT_TIME.equals(suffix)
+                || DISPLACEMENT.equals(suffix);
+    }
+
+    /**
+     * @param value A {@link LocationEngineRequest} priority, by name or by value.
+     *              Values of other APIs, like the Google ones, are rejected when the profile is built.
+     * @return The priority value
+     */
+    private static int parsePriority(@NonNull String value) {
+        switch (value) {
+            case "high_accuracy":
+                return LocationEngineRequest.PRIORITY_HIGH_ACCURACY;
+            case "balanced":
+                return LocationEngineRequest.PRIORITY_BALANCED_POWER_ACCURACY;
+            case "low_power":
+                return LocationEngineRequest.PRIORITY_LOW_POWER;
+            case "no_power":
+                return LocationEngineRequest.PRIORITY_NO_POWER;
+            default:
+                return Integer.parseInt(value);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package gr.nikolis.gpslib.gps.profile;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of an engine's reconfigurations.
+ * The fix gap is the time between the last fix before a re-registration and the first fix after it.
+ * All times are in nanoseconds of the elapsed realtime clock.
+ */
+public final class ReconfigurationStats {
+
+    private final AtomicLong reconfigurations = new AtomicLong();
+    private final AtomicLong reRegistrations = new AtomicLong();
+    private final AtomicLong lastFixNanos = new AtomicLong(-1);
+    private final AtomicLong pendingGapStartNanos = new AtomicLong(-1);
+    private final AtomicLong lastFixGapNanos = new AtomicLong();
+    private final AtomicLong maxFixGapNanos = new AtomicLong();
+
+    /**
+     * Called by the engine on every reconfigure request
+     *
+     * @param reRegistered True if the provider registration was replaced
+     */
+    public void onReconfigure(boolean reRegistered) {
+        reconfigurations.incrementAndGet();
+        if (reRegistered) {
+            reRegistrations.incrementAndGet();
+            pendingGapStartNanos.compareAndSet(-1, lastFixNanos.get());
+        }
+    }
+
+    /**
+     * Called by the engine on every delivered fix
+     *
+     * @param nowNanos The elapsed realtime of the delivery
+     */
+    public void onFix(long nowNanos) {
+        lastFixNanos.set(nowNanos);
+        long gapStart = pendingGapStartNanos.getAndSet(-1);
+        if (gapStart >= 0) {
+            long gap = nowNanos - gapStart;
+            lastFixGapNanos.set(gap);
+            long max;
+            while (gap > (max = maxFixGapNanos.get()) && !maxFixGapNanos.compareAndSet(max, gap)) {
+                //retry
+            }
+        }
+    }
+
+    /**
+     * @return How many times reconfigure was called
+     */
+    public long getReconfigurations() {
+        return reconfigurations.get();
+    }
+
+    /**
+     * @return How many of the reconfigurations had to replace the provider registration
+     */
+    public long getReRegistrations() {
+        return reRegistrations.get();
+    }
+
+    /**
+     * @return The fix gap around the latest re-registration
+     */
+    public long getLastFixGapNanos() {
+        return lastFixGapNanos.get();
+    }
+
+    /**
+     * @return The longest fix gap around any re-registration
+     */
+    public long getMaxFixGapNanos() {
+        return maxFixGapNanos.get();
+    }
+}
@@ -6,6 +6,8 @@ import android.location.Location;
 import android.os.IBinder;
 
 import gr.nikolis.gpslib.gps.engines.AndroidEngine;
+import gr.nikolis.gpslib.gps.profile.LocationProfile;
+import gr.nikolis.gpslib.gps.profile.LocationProfiles;
 import gr.nikolis.gpslib.receiver.MyBroadcastReceiver;
 
 public class AndroidService extends Service implements AndroidEngine.OnAndroidListener {
@@ -23,9 +25,21 @@ public class AndroidService extends Service implements AndroidEngine.OnAndroidLi
                 .setMinimumTime(1000)
                 .setMinimumDistance(0)
                 .hasSingleInstance(true)
+                .setAsyncInit(true)
                 .build();
     }
 
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // switch to another profile without tearing down the engine
+        if (intent != null && androidEngine != null) {
+            LocationProfile profile = LocationProfiles.get(intent.getStringExtra(LocationProfiles.EXTRA_PROFILE_NAME));
+            if (profile != null)
+                androidEngine.reconfigure(profile);
+        }
+        return super.onStartCommand(intent, flags, startId);
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
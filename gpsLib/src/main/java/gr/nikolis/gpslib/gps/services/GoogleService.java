@@ -7,6 +7,8 @@ import android.location.Location;
 import android.os.IBinder;
 
 import gr.nikolis.gpslib.gps.engines.GoogleEngine;
+import gr.nikolis.gpslib.gps.profile.LocationProfile;
+import gr.nikolis.gpslib.gps.profile.LocationProfiles;
 import gr.nikolis.gpslib.receiver.MyBroadcastReceiver;
 
 public class GoogleService extends Service implements GoogleEngine.OnLocationUpdateListener {
@@ -24,6 +26,7 @@ public class GoogleService extends Service implements GoogleEngine.OnLocationUpd
                 .setUpdateInterval(1000)
                 .setFastestInterval(1)
                 .hasSingleInstance(true)
+                .setAsyncInit(true)
                 .build();
     }
 
@@ -34,6 +37,17 @@ public class GoogleService extends Service implements GoogleEngine.OnLocationUpd
         sendBroadcast(i);
     }
 
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // switch to another profile without tearing down the engine
+        if (intent != null && googleEngine != null) {
+            LocationProfile profile = LocationProfiles.get(intent.getStringExtra(LocationProfiles.EXTRA_PROFILE_NAME));
+            if (profile != null)
+                googleEngine.reconfigure(profile);
+        }
+        return super.onStartCommand(intent, flags, startId);
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
@@ -8,6 +8,8 @@ import android.os.IBinder;
 import androidx.annotation.NonNull;
 
 import gr.nikolis.gpslib.gps.engines.MapBoxEngine;
+import gr.nikolis.gpslib.gps.profile.LocationProfile;
+import gr.nikolis.gpslib.gps.profile.LocationProfiles;
 import gr.nikolis.gpslib.receiver.MyBroadcastReceiver;
 
 import static gr.nikolis.gpslib.Common.DISPLACEMENT;
@@ -30,6 +32,7 @@ public class MapBoxService extends Service implements MapBoxEngine.OnLocationUpd
         mapBoxEngine = new MapBoxEngine
                 .Builder(this, this)
                 .hasSingleInstance(true)
+                .setAsyncInit(true)
                 .setPriority(PRIORITY)
                 .setInterval(INTERVAL)
                 .setFastestInterval(FASTEST_INTERVAL)
@@ -38,6 +41,17 @@ public class MapBoxService extends Service implements MapBoxEngine.OnLocationUpd
                 .build();
     }
 
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // switch to another profile without tearing down the engine
+        if (intent != null && mapBoxEngine != null) {
+            LocationProfile profile = LocationProfiles.get(intent.getStringExtra(LocationProfiles.EXTRA_PROFILE_NAME));
+            if (profile != null)
+                mapBoxEngine.reconfigure(profile);
+        }
+        return super.onStartCommand(intent, flags, startId);
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
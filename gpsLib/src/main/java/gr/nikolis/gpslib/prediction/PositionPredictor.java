@@ -0,0 +1,259 @@
+package gr.nikolis.gpslib.prediction;
+
+import android.location.Location;
+import android.os.Build;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import gr.nikolis.gpslib.Geodesy;
+import gr.nikolis.gpslib.delivery.Subscription;
+
+/**
+ * Extrapolates the last fix to any moment, so renderers can move the marker every frame.
+ * The motion model keeps the fix bearing and speed, and lets both the speed and the turn rate
+ * decay exponentially, so a vehicle coasts to a stop instead of driving away forever.
+ * Queries run in constant time and do not allocate. Call from a renderer like:
+ * predictor.positionAt(SystemClock.elapsedRealtimeNanos(), predictedPosition);
+ */
+public final class PositionPredictor implements Subscription.Subscriber {
+
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final float DEFAULT_SPEED_ACCURACY = 1.0f;
+
+    //optional parameters
+    private final double speedDecaySeconds, turnDecaySeconds;
+    private final double maxTurnRate, maxAcceleration;
+    private final long maxExtrapolationNanos;
+
+    //the last fix and its derived motion, replaced as a whole on every fix
+    private volatile State state;
+
+    public static class Builder {
+        private long speedDecayMillis = 3000;
+        private long turnDecayMillis = 1000;
+        private float maxTurnRate = 45.0f;
+        private float maxAcceleration = 2.0f;
+        private long maxExtrapolationMillis = 5000;
+
+        public Builder() {
+        }
+
+        /**
+         * @param speedDecayMillis The time constant of the speed decay
+         */
+        public Builder setSpeedDecay(long speedDecayMillis) {
+            this.speedDecayMillis = speedDecayMillis;
+            return this;
+        }
+
+        /**
+         * @param turnDecayMillis The time constant of the turn rate decay
+         */
+        public Builder setTurnDecay(long turnDecayMillis) {
+            this.turnDecayMillis = turnDecayMillis;
+            return this;
+        }
+
+        /**
+         * @param maxTurnRate The highest believable turn rate in degrees per second
+         */
+        public Builder setMaxTurnRate(float maxTurnRate) {
+            this.maxTurnRate = maxTurnRate;
+            return this;
+        }
+
+        /**
+         * @param maxAcceleration The acceleration in m/s^2 the confidence radius accounts for
+         */
+        public Builder setMaxAcceleration(float maxAcceleration) {
+            this.maxAcceleration = maxAcceleration;
+            return this;
+        }
+
+        /**
+         * @param maxExtrapolationMillis After this the prediction stops moving and only the radius grows
+         */
+        public Builder setMaxExtrapolation(long maxExtrapolationMillis) {
+            this.maxExtrapolationMillis = maxExtrapolationMillis;
+            return this;
+        }
+
+        public PositionPredictor build() {
+            if (speedDecayMillis <= 0 || turnDecayMillis <= 0)
+                throw new IllegalArgumentException("Decay time constants must be positive");
+            return new PositionPredictor(this);
+        }
+    }
+
+    private PositionPredictor(@NonNull Builder builder) {
+        this.speedDecaySeconds = builder.speedDecayMillis / 1000.0;
+        this.turnDecaySeconds = builder.turnDecayMillis / 1000.0;
+        this.maxTurnRate = builder.maxTurnRate;
+        this.maxAcceleration = builder.maxAcceleration;
+        this.maxExtrapolationNanos = builder.maxExtrapolationMillis * 1_000_000L;
+    }
+
+    @Override
+    public void onLocation(@NonNull Location location) {
+        update(location);
+    }
+
+    /**
+     * Feeds a new fix. Fixes without speed or bearing get them from the previous fix.
+     * Until some fix has a bearing the prediction stays at the last fix.
+     *
+     * @param location The new fix
+     */
+    public void update(@NonNull Location location) {
+        long fixNanos = location.getElapsedRealtimeNanos();
+        if (fixNanos == 0)
+            fixNanos = SystemClock.elapsedRealtimeNanos();
+        float speedAccuracy = Float.NaN;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && location.hasSpeedAccuracy())
+            speedAccuracy = location.getSpeedAccuracyMetersPerSecond();
+        update(location.getLatitude(), location.getLongitude(), fixNanos,
+                location.hasSpeed() ? location.getSpeed() : Float.NaN,
+                location.hasBearing() ? location.getBearing() : Float.NaN,
+                location.hasAccuracy() ? location.getAccuracy() : Float.NaN,
+                speedAccuracy);
+    }
+
+    /**
+     * Feeds a new fix, e.g. from a replayed track. Missing values are NaN,
+     * and are handled like in {@link #update(Location)}.
+     *
+     * @param lat                  The latitude
+     * @param lon                  The longitude
+     * @param elapsedRealtimeNanos The fix time on the clock later passed to {@link #positionAt(long, PredictedPosition)}
+     * @param speed                The speed in m/s
+     * @param bearing              The bearing in degrees
+     * @param accuracy             The horizontal accuracy in meters
+     * @param speedAccuracy        The speed accuracy in m/s
+     */
+    public void update(double lat, double lon, long elapsedRealtimeNanos,
+                       float speed, float bearing, float accuracy, float speedAccuracy) {
+        State previous = state;
+        if (previous != null && elapsedRealtimeNanos <= previous.fixNanos)
+            return; // out of order or duplicate
+
+        if (Float.isNaN(accuracy))
+            accuracy = 0.0f;
+        if (Float.isNaN(speedAccuracy))
+            speedAccuracy = DEFAULT_SPEED_ACCURACY;
+        double dt = previous == null ? 0 : (elapsedRealtimeNanos - previous.fixNanos) / NANOS_PER_SECOND;
+
+        double fixSpeed;
+        if (!Float.isNaN(speed))
+            fixSpeed = speed;
+        else if (previous != null)
+            fixSpeed = Geodesy.haversine(previous.latitude(), previous.longitude(), lat, lon) / dt;
+        else
+            fixSpeed = 0;
+
+        double fixBearing = 0;
+        boolean measured = true;
+        if (!Float.isNaN(bearing))
+            fixBearing = bearing;
+        else if (previous != null && Geodesy.haversine(previous.latitude(), previous.longitude(), lat, lon) > accuracy)
+            fixBearing = Geodesy.bearing(previous.latitude(), previous.longitude(), lat, lon);
+        else {
+            measured = false;
+            if (previous != null)
+                fixBearing = previous.bearing;
+        }
+        boolean bearingKnown = measured || (previous != null && previous.bearingKnown);
+
+        double turnRate = 0;
+        if (measured && previous != null && previous.bearingKnown && previous.speed > 1.0 && fixSpeed > 1.0) {
+            double delta = Geodesy.normalizeBearing(fixBearing - previous.bearing + 180.0) - 180.0;
+            turnRate = Math.max(-maxTurnRate, Math.min(maxTurnRate, delta / dt));
+        }
+
+        state = new State(new Geodesy.LocalProjection(lat, lon), elapsedRealtimeNanos,
+                fixSpeed, fixBearing, bearingKnown, turnRate, accuracy, speedAccuracy);
+    }
+
+    /**
+     * Predicts the position at a moment of the elapsed realtime clock
+     *
+     * @param elapsedRealtimeNanos The moment, e.g. the frame time
+     * @param out                  Receives the prediction
+     * @return False if there is no fix yet, and then out is untouched
+     */
+    public boolean positionAt(long elapsedRealtimeNanos, @NonNull PredictedPosition out) {
+        State s = state;
+        if (s == null)
+            return false;
+
+        long ageNanos = Math.max(0, elapsedRealtimeNanos - s.fixNanos);
+        double t = Math.min(ageNanos, maxExtrapolationNanos) / NANOS_PER_SECOND;
+
+        // closed form integrals of the decaying speed and turn rate
+        double speedFactor = Math.exp(-t / speedDecaySeconds);
+        double distance = s.speed * speedDecaySeconds * (1 - speedFactor);
+        double age = ageNanos / NANOS_PER_SECOND;
+        double radius = s.accuracy + s.speedAccuracy * age + 0.5 * maxAcceleration * age * age;
+
+        if (s.bearingKnown) {
+            double turn = s.turnRate * turnDecaySeconds * (1 - Math.exp(-t / turnDecaySeconds));
+            double heading = Math.toRadians(s.bearing + turn * 0.5);
+            out.latitude = s.projection.latitude(distance * Math.cos(heading));
+            out.longitude = s.projection.longitude(distance * Math.sin(heading));
+            out.bearing = (float) Geodesy.normalizeBearing(s.bearing + turn);
+        } else {
+            // no direction to move in, so stay put and let the radius cover the travelled distance
+            out.latitude = s.latitude();
+            out.longitude = s.longitude();
+            out.bearing = 0;
+            radius += distance;
+        }
+        out.hasBearing = s.bearingKnown;
+        out.speed = (float) (s.speed * speedFactor);
+        out.confidenceRadius = (float) radius;
+        out.ageNanos = ageNanos;
+        return true;
+    }
+
+    /**
+     * @return True after the first fix
+     */
+    public boolean hasFix() {
+        return state != null;
+    }
+
+    /**
+     * Forgets the last fix, e.g. after the provider was disabled
+     */
+    public void reset() {
+        state = null;
+    }
+
+    private static final class State {
+        final Geodesy.LocalProjection projection;
+        final long fixNanos;
+        final double speed, bearing, turnRate;
+        final boolean bearingKnown;
+        final float accuracy, speedAccuracy;
+
+        State(Geodesy.LocalProjection projection, long fixNanos, double speed, double bearing,
+              boolean bearingKnown, double turnRate, float accuracy, float speedAccuracy) {
+            this.projection = projection;
+            this.fixNanos = fixNanos;
+            this.speed = speed;
+            this.bearing = bearing;
+            this.bearingKnown = bearingKnown;
+            this.turnRate = turnRate;
+            this.accuracy = accuracy;
+            this.speedAccuracy = speedAccuracy;
+        }
+
+        double latitude() {
+            return projection.getOriginLatitude();
+        }
+
+        double longitude() {
+            return projection.getOriginLongitude();
+        }
+    }
+}
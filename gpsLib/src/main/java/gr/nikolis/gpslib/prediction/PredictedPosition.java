@@ -0,0 +1,56 @@
+package gr.nikolis.gpslib.prediction;
+
+/**
+ * Mutable result of {@link PositionPredictor#positionAt(long, PredictedPosition)}.
+ * Keep one per renderer and reuse it every frame.
+ */
+public final class PredictedPosition {
+
+    double latitude, longitude;
+    float bearing, speed, confidenceRadius;
+    boolean hasBearing;
+    long ageNanos;
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * @return The predicted bearing in degrees [0, 360)
+     */
+    public float getBearing() {
+        return bearing;
+    }
+
+    /**
+     * @return False if no bearing is known yet, and then the position is not extrapolated
+     */
+    public boolean hasBearing() {
+        return hasBearing;
+    }
+
+    /**
+     * @return The predicted speed in m/s
+     */
+    public float getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return The radius in meters that should contain the true position
+     */
+    public float getConfidenceRadius() {
+        return confidenceRadius;
+    }
+
+    /**
+     * @return How far ahead of the last fix the prediction is
+     */
+    public long getAgeNanos() {
+        return ageNanos;
+    }
+}
@@ -0,0 +1,62 @@
+package gr.nikolis.gpslib.staypoint;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A recurring stay location, the merge of every stay point within the merge radius
+ */
+public final class Place {
+
+    private final int id;
+    private double latitude, longitude;
+    private int visits;
+    private long totalDwellMillis;
+
+    Place(int id, double latitude, double longitude) {
+        this.id = id;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public synchronized double getLatitude() {
+        return latitude;
+    }
+
+    public synchronized double getLongitude() {
+        return longitude;
+    }
+
+    public synchronized int getVisits() {
+        return visits;
+    }
+
+    public synchronized long getTotalDwellMillis() {
+        return totalDwellMillis;
+    }
+
+    /**
+     * Folds a finished visit in, moving the centroid towards it by visit count
+     */
+    synchronized void addVisit(double lat, double lon, long dwellMillis) {
+        visits++;
+        latitude += (lat - latitude) / visits;
+        longitude += (lon - longitude) / visits;
+        totalDwellMillis += dwellMillis;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "Place{" +
+                "id=" + id +
+                ", latitude=" + latitude +
+                ", longitude=" + longitude +
+                ", visits=" + visits +
+                ", totalDwellMillis=" + totalDwellMillis +
+                '}';
+    }
+}
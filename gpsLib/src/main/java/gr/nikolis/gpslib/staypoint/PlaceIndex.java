@@ -0,0 +1,124 @@
+package gr.nikolis.gpslib.staypoint;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gr.nikolis.gpslib.Geodesy;
+import gr.nikolis.gpslib.aggregation.LongIntHashMap;
+
+/**
+ * Grid of places with cells as wide as the merge radius, so a lookup checks only the 3x3 cells
+ * around the point. Each cell keeps a chain of its places through the next array.
+ * A place is moved to another cell when a visit moves its centroid there.
+ */
+final class PlaceIndex {
+
+    private static final int NONE = -1;
+    private static final double METERS_PER_DEGREE = Geodesy.EARTH_RADIUS * Math.PI / 180.0;
+
+    private final double radius;
+    private final LongIntHashMap cellHeads = new LongIntHashMap(64, NONE);
+    private final List<Place> places = new ArrayList<>();
+    private int[] next = new int[64];
+    private long[] cellKeys = new long[64];
+
+    PlaceIndex(double radius) {
+        this.radius = radius;
+    }
+
+    /**
+     * @return The nearest place within the radius, or a new place at the point
+     */
+    @NonNull
+    Place resolve(double lat, double lon) {
+        long row = row(lat);
+        Place nearest = null;
+        double nearestDistance = radius;
+        for (long r = row - 1; r <= row + 1; r++) {
+            // the column width depends on the latitude of the row
+            long column = column(lon, r);
+            for (long c = column - 1; c <= column + 1; c++) {
+                for (int i = cellHeads.get(key(r, c)); i != NONE; i = next[i]) {
+                    Place place = places.get(i);
+                    double distance = Geodesy.haversine(lat, lon, place.getLatitude(), place.getLongitude());
+                    if (distance <= nearestDistance) {
+                        nearest = place;
+                        nearestDistance = distance;
+                    }
+                }
+            }
+        }
+        if (nearest != null)
+            return nearest;
+
+        int id = places.size();
+        Place place = new Place(id, lat, lon);
+        places.add(place);
+        if (id == next.length) {
+            next = Arrays.copyOf(next, id << 1);
+            cellKeys = Arrays.copyOf(cellKeys, id << 1);
+        }
+        link(id, cellKey(lat, lon));
+        return place;
+    }
+
+    /**
+     * Folds a finished visit into the place and keeps the place in the cell of its centroid
+     */
+    void addVisit(@NonNull Place place, double lat, double lon, long dwellMillis) {
+        place.addVisit(lat, lon, dwellMillis);
+        int id = place.getId();
+        long key = cellKey(place.getLatitude(), place.getLongitude());
+        if (key != cellKeys[id]) {
+            unlink(id);
+            link(id, key);
+        }
+    }
+
+    @NonNull
+    List<Place> getPlaces() {
+        return new ArrayList<>(places);
+    }
+
+    private void link(int id, long key) {
+        cellKeys[id] = key;
+        next[id] = cellHeads.put(key, id);
+    }
+
+    private void unlink(int id) {
+        long key = cellKeys[id];
+        int head = cellHeads.get(key);
+        if (head == id) {
+            cellHeads.put(key, next[id]);
+            return;
+        }
+        for (int i = head; i != NONE; i = next[i]) {
+            if (next[i] == id) {
+                next[i] = next[id];
+                return;
+            }
+        }
+    }
+
+    private long cellKey(double lat, double lon) {
+        long row = row(lat);
+        return key(row, column(lon, row));
+    }
+
+    private long row(double lat) {
+        return (long) Math.floor(lat * METERS_PER_DEGREE / radius);
+    }
+
+    private long column(double lon, long row) {
+        double rowLatitude = (row + 0.5) * radius / METERS_PER_DEGREE;
+        double metersPerDegreeLon = METERS_PER_DEGREE * Math.max(Math.cos(Math.toRadians(rowLatitude)), 1e-6);
+        return (long) Math.floor(lon * metersPerDegreeLon / radius);
+    }
+
+    private static long key(long row, long column) {
+        return (row << 32) ^ (column & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,77 @@
+package gr.nikolis.gpslib.staypoint;
+
+import androidx.annotation.NonNull;
+
+/**
+ * One stay, reported on arrival and again on departure
+ */
+public final class StayPoint {
+
+    private final Place place;
+    private final double latitude, longitude;
+    private final long arrivalTime, departureTime;
+    private final int fixes;
+
+    StayPoint(@NonNull Place place, double latitude, double longitude,
+              long arrivalTime, long departureTime, int fixes) {
+        this.place = place;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.arrivalTime = arrivalTime;
+        this.departureTime = departureTime;
+        this.fixes = fixes;
+    }
+
+    /**
+     * @return The recurring place this stay belongs to
+     */
+    public Place getPlace() {
+        return place;
+    }
+
+    /**
+     * @return The centroid latitude of the fixes of the stay
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * @return The centroid longitude of the fixes of the stay
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public long getArrivalTime() {
+        return arrivalTime;
+    }
+
+    /**
+     * @return The time of the last fix of the stay, so far on arrival
+     */
+    public long getDepartureTime() {
+        return departureTime;
+    }
+
+    public long getDwellMillis() {
+        return departureTime - arrivalTime;
+    }
+
+    public int getFixes() {
+        return fixes;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "StayPoint{" +
+                "place=" + place.getId() +
+                ", latitude=" + latitude +
+                ", longitude=" + longitude +
+                ", arrivalTime=" + arrivalTime +
+                ", departureTime=" + departureTime +
+                ", fixes=" + fixes +
+                '}';
+    }
+}
@@ -0,0 +1,255 @@
+package gr.nikolis.gpslib.staypoint;
+
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+
+import gr.nikolis.gpslib.Geodesy;
+import gr.nikolis.gpslib.delivery.Subscription;
+
+/**
+ * Online stay point detection over a fix stream.
+ * Fixes within the distance threshold of the running centroid grow the current cluster,
+ * and the cluster becomes a stay (arrival) once it spans the time threshold.
+ * A single fix outside the cluster is treated as jitter, only a run of consecutive outliers
+ * ends the stay (departure), and then those outliers seed the next cluster.
+ * Stays are merged into recurring {@link Place}s on a grid.
+ * Memory per active cluster is constant, so months of replayed fixes can go through {@link #add}.
+ * Call like:
+ * detector = new StayPointDetector
+ * .Builder(this)
+ * .setDistanceThreshold(50)
+ * .setTimeThreshold(5 * 60 * 1000)
+ * .build();
+ */
+public final class StayPointDetector implements Subscription.Subscriber {
+
+    public interface OnStayPointListener {
+        void onArrival(@NonNull StayPoint stayPoint);
+
+        void onDeparture(@NonNull StayPoint stayPoint);
+    }
+
+    //required parameters
+    private final OnStayPointListener onStayPointListener;
+
+    //optional parameters
+    private final double distanceThreshold;
+    private final long timeThreshold, maxGap;
+    private final int departureFixes;
+
+    //class parameters
+    private final PlaceIndex placeIndex;
+
+    //the active cluster, in meters around its first fix
+    private Geodesy.LocalProjection origin;
+    private double sumEast, sumNorth;
+    private int count;
+    private long firstTime, lastTime;
+    private Place place;
+
+    //consecutive fixes outside the active cluster
+    private final double[] outlierLat, outlierLon;
+    private final long[] outlierTime;
+    private int outliers;
+
+    public static class Builder {
+        //required parameters
+        private final OnStayPointListener onStayPointListener;
+
+        //optional parameters
+        private double distanceThreshold = 50;
+        private long timeThreshold = 5 * 60 * 1000L;
+        private long maxGap = 30 * 60 * 1000L;
+        private int departureFixes = 3;
+        private double placeRadius = 100;
+
+        /**
+         * The Builder constructor
+         *
+         * @param onStayPointListener Receives the arrivals and departures on the feeding thread
+         */
+        public Builder(@NonNull OnStayPointListener onStayPointListener) {
+            this.onStayPointListener = onStayPointListener;
+        }
+
+        /**
+         * @param distanceThreshold The cluster radius in meters
+         */
+        public Builder setDistanceThreshold(double distanceThreshold) {
+            this.distanceThreshold = distanceThreshold;
+            return this;
+        }
+
+        /**
+         * @param timeThreshold The minimum stay in millis
+         */
+        public Builder setTimeThreshold(long timeThreshold) {
+            this.timeThreshold = timeThreshold;
+            return this;
+        }
+
+        /**
+         * @param maxGap A longer gap between fixes closes the cluster, e.g. the device was off
+         */
+        public Builder setMaxGap(long maxGap) {
+            this.maxGap = maxGap;
+            return this;
+        }
+
+        /**
+         * @param departureFixes How many consecutive fixes outside the cluster mean departure
+         */
+        public Builder setDepartureFixes(int departureFixes) {
+            this.departureFixes = departureFixes;
+            return this;
+        }
+
+        /**
+         * @param placeRadius Stays closer than this in meters are the same place
+         */
+        public Builder setPlaceRadius(double placeRadius) {
+            this.placeRadius = placeRadius;
+            return this;
+        }
+
+        public StayPointDetector build() {
+            if (distanceThreshold <= 0 || placeRadius <= 0)
+                throw new IllegalArgumentException("Distances must be positive");
+            if (departureFixes < 1)
+                throw new IllegalArgumentException("Departure fixes must be positive: " + departureFixes);
+            return new StayPointDetector(this);
+        }
+    }
+
+    private StayPointDetector(@NonNull Builder builder) {
+        this.onStayPointListener = builder.onStayPointListener;
+        this.distanceThreshold = builder.distanceThreshold;
+        this.timeThreshold = builder.timeThreshold;
+        this.maxGap = builder.maxGap;
+        this.departureFixes = builder.departureFixes;
+        this.placeIndex = new PlaceIndex(builder.placeRadius);
+        this.outlierLat = new double[departureFixes];
+        this.outlierLon = new double[departureFixes];
+        this.outlierTime = new long[departureFixes];
+    }
+
+    @Override
+    public void onLocation(@NonNull Location location) {
+        add(location.getLatitude(), location.getLongitude(), location.getTime());
+    }
+
+    /**
+     * Feeds a fix. Fixes must come in time order, older fixes are ignored.
+     *
+     * @param lat        The latitude
+     * @param lon        The longitude
+     * @param timeMillis The fix time
+     */
+    public synchronized void add(double lat, double lon, long timeMillis) {
+        if (origin != null) {
+            long previous = outliers > 0 ? outlierTime[outliers - 1] : lastTime;
+            if (timeMillis < previous)
+                return;
+            if (timeMillis - previous > maxGap)
+                closeCluster();
+        }
+        if (origin == null) {
+            startCluster(lat, lon, timeMillis);
+            return;
+        }
+
+        double east = origin.east(lon) - sumEast / count;
+        double north = origin.north(lat) - sumNorth / count;
+        if (east * east + north * north <= distanceThreshold * distanceThreshold) {
+            // back inside, the outliers were jitter
+            outliers = 0;
+            sumEast += origin.east(lon);
+            sumNorth += origin.north(lat);
+            count++;
+            lastTime = timeMillis;
+            if (place == null && lastTime - firstTime >= timeThreshold) {
+                place = placeIndex.resolve(centroidLatitude(), centroidLongitude());
+                onStayPointListener.onArrival(stayPoint());
+            }
+            return;
+        }
+
+        outlierLat[outliers] = lat;
+        outlierLon[outliers] = lon;
+        outlierTime[outliers] = timeMillis;
+        if (++outliers < departureFixes)
+            return;
+
+        // departure, the outliers start the next cluster
+        int pending = outliers;
+        closeCluster();
+        startCluster(outlierLat[0], outlierLon[0], outlierTime[0]);
+        for (int i = 1; i < pending; i++)
+            replayOutlier(i);
+    }
+
+    /**
+     * Ends the current stay, e.g. at the end of a replayed track
+     */
+    public synchronized void flush() {
+        closeCluster();
+    }
+
+    /**
+     * @return A snapshot of the recurring places found so far
+     */
+    @NonNull
+    public synchronized List<Place> getPlaces() {
+        return placeIndex.getPlaces();
+    }
+
+    /**
+     * @return True while the current cluster is a confirmed stay
+     */
+    public synchronized boolean isStaying() {
+        return place != null;
+    }
+
+    private void replayOutlier(int index) {
+        // the next cluster has fewer fixes than departureFixes, so this never recurses more than once
+        double lat = outlierLat[index], lon = outlierLon[index];
+        long time = outlierTime[index];
+        add(lat, lon, time);
+    }
+
+    private void startCluster(double lat, double lon, long timeMillis) {
+        origin = new Geodesy.LocalProjection(lat, lon);
+        sumEast = sumNorth = 0;
+        count = 1;
+        firstTime = lastTime = timeMillis;
+        outliers = 0;
+        place = null;
+    }
+
+    private void closeCluster() {
+        if (origin != null && place != null) {
+            StayPoint stayPoint = stayPoint();
+            placeIndex.addVisit(place, stayPoint.getLatitude(), stayPoint.getLongitude(), stayPoint.getDwellMillis());
+            onStayPointListener.onDeparture(stayPoint);
+        }
+        origin = null;
+        place = null;
+        outliers = 0;
+    }
+
+    @NonNull
+    private StayPoint stayPoint() {
+        return new StayPoint(place, centroidLatitude(), centroidLongitude(), firstTime, lastTime, count);
+    }
+
+    private double centroidLatitude() {
+        return origin.latitude(sumNorth / count);
+    }
+
+    private double centroidLongitude() {
+        return origin.longitude(sumEast / count);
+    }
+}
@@ -0,0 +1,52 @@
+package gr.nikolis.gpslib;
+
+import java.util.Locale;
+
+/**
+ * Minimal timing harness for the benchmarks of the library.
+ * Runs the body a few times to warm up the JIT, then reports the best of the timed rounds,
+ * which is the least disturbed by GC and other processes.
+ * The numbers are printed, not asserted, since they depend on the machine.
+ */
+public final class Benchmark {
+
+    public interface Body {
+        /**
+         * Runs one round
+         *
+         * @return Any result of the work, so the JIT can not drop it
+         */
+        double run();
+    }
+
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int TIMED_ROUNDS = 7;
+
+    /**
+     * Keeps the results alive
+     */
+    public static volatile double sink;
+
+    private Benchmark() {
+    }
+
+    /**
+     * @param name       The label of the printed line
+     * @param operations The operations per round, e.g. the distances computed
+     * @param body       The work of one round
+     * @return The best time per operation in nanoseconds
+     */
+    public static double nanosPerOperation(String name, long operations, Body body) {
+        for (int i = 0; i < WARM_UP_ROUNDS; i++)
+            sink += body.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < TIMED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            sink += body.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double nanos = (double) best / operations;
+        System.out.println(String.format(Locale.US, "%-40s %9.1f ns/op %12.0f ops/s", name, nanos, 1e9 / nanos));
+        return nanos;
+    }
+}
@@ -0,0 +1,116 @@
+package gr.nikolis.gpslib;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Per call and per batch cost of the distance kernels over a 100k fix track.
+ * Location.distanceBetween is not available on the JVM, it is the WGS84 Vincenty inverse
+ * (and allocates its result array), so {@link Geodesy#vincenty} stands in for it.
+ */
+public class GeodesyBenchmark {
+
+    private static final int COUNT = 100_000;
+    private static final double[] LATS = new double[COUNT];
+    private static final double[] LONS = new double[COUNT];
+    private static final double[] OUT = new double[COUNT];
+
+    @BeforeClass
+    public static void createTrack() {
+        Random random = new Random(7);
+        double lat = 37.97, lon = 23.72;
+        for (int i = 0; i < COUNT; i++) {
+            lat += (random.nextDouble() - 0.5) * 1e-4;
+            lon += (random.nextDouble() - 0.5) * 1e-4;
+            LATS[i] = lat;
+            LONS[i] = lon;
+        }
+    }
+
+    @Test
+    public void scalarDistances() {
+        double vincenty = Benchmark.nanosPerOperation("vincenty (Location.distanceBetween)", COUNT - 1, new Benchmark.Body() {
+            @Override
+            public double run() {
+                double sum = 0;
+                for (int i = 1; i < COUNT; i++)
+                    sum += Geodesy.vincenty(LATS[i - 1], LONS[i - 1], LATS[i], LONS[i]);
+                return sum;
+            }
+        });
+        double haversine = Benchmark.nanosPerOperation("haversine", COUNT - 1, new Benchmark.Body() {
+            @Override
+            public double run() {
+                double sum = 0;
+                for (int i = 1; i < COUNT; i++)
+                    sum += Geodesy.haversine(LATS[i - 1], LONS[i - 1], LATS[i], LONS[i]);
+                return sum;
+            }
+        });
+        double equirectangular = Benchmark.nanosPerOperation("equirectangular", COUNT - 1, new Benchmark.Body() {
+            @Override
+            public double run() {
+                double sum = 0;
+                for (int i = 1; i < COUNT; i++)
+                    sum += Geodesy.equirectangular(LATS[i - 1], LONS[i - 1], LATS[i], LONS[i]);
+                return sum;
+            }
+        });
+        final Geodesy.LocalProjection projection = new Geodesy.LocalProjection(LATS[0], LONS[0]);
+        Benchmark.nanosPerOperation("LocalProjection.distance", COUNT, new Benchmark.Body() {
+            @Override
+            public double run() {
+                double sum = 0;
+                for (int i = 0; i < COUNT; i++)
+                    sum += projection.distance(LATS[i], LONS[i]);
+                return sum;
+            }
+        });
+        // loose, the ratios are printed above
+        assertTrue(equirectangular < haversine && haversine < vincenty);
+    }
+
+    @Test
+    public void batchKernels() {
+        Benchmark.nanosPerOperation("haversineSegments", COUNT - 1, new Benchmark.Body() {
+            @Override
+            public double run() {
+                Geodesy.haversineSegments(LATS, LONS, OUT, COUNT);
+                return OUT[COUNT - 2];
+            }
+        });
+        Benchmark.nanosPerOperation("equirectangularSegments", COUNT - 1, new Benchmark.Body() {
+            @Override
+            public double run() {
+                Geodesy.equirectangularSegments(LATS, LONS, OUT, COUNT);
+                return OUT[COUNT - 2];
+            }
+        });
+        Benchmark.nanosPerOperation("bearingSegments", COUNT - 1, new Benchmark.Body() {
+            @Override
+            public double run() {
+                Geodesy.bearingSegments(LATS, LONS, OUT, COUNT);
+                return OUT[COUNT - 2];
+            }
+        });
+        Benchmark.nanosPerOperation("haversineFrom", COUNT, new Benchmark.Body() {
+            @Override
+            public double run() {
+                Geodesy.haversineFrom(LATS[0], LONS[0], LATS, LONS, OUT, COUNT);
+                return OUT[COUNT - 1];
+            }
+        });
+        final Geodesy.LocalProjection projection = new Geodesy.LocalProjection(LATS[0], LONS[0]);
+        Benchmark.nanosPerOperation("LocalProjection.distances", COUNT, new Benchmark.Body() {
+            @Override
+            public double run() {
+                projection.distances(LATS, LONS, OUT, COUNT);
+                return OUT[COUNT - 1];
+            }
+        });
+    }
+}
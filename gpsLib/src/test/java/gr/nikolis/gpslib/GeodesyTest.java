@@ -0,0 +1,90 @@
+package gr.nikolis.gpslib;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GeodesyTest {
+
+    @Test
+    public void vincentyMatchesKnownGeodesic() {
+        // Flinders Peak to Buninyong, the example of Vincenty's paper
+        double distance = Geodesy.vincenty(-37.95103341666667, 144.42486788888888,
+                -37.65282113888889, 143.92649552777777);
+        assertEquals(54972.271, distance, 0.001);
+    }
+
+    @Test
+    public void haversineIsWithinSpheroidError() {
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            double lat1 = random.nextDouble() * 160 - 80, lon1 = random.nextDouble() * 360 - 180;
+            double lat2 = random.nextDouble() * 160 - 80, lon2 = random.nextDouble() * 360 - 180;
+            double reference = Geodesy.vincenty(lat1, lon1, lat2, lon2);
+            if (Double.isNaN(reference) || reference < 1)
+                continue;
+            double error = Math.abs(Geodesy.haversine(lat1, lon1, lat2, lon2) - reference) / reference;
+            assertTrue("relative error " + error, error < 0.006);
+        }
+    }
+
+    @Test
+    public void equirectangularStaysWithinItsBound() {
+        Random random = new Random(2);
+        for (int i = 0; i < 100000; i++) {
+            double lat1 = random.nextDouble() * 158 - 79, lon1 = random.nextDouble() * 360 - 180;
+            double lat2 = lat1 + random.nextDouble() - 0.5, lon2 = lon1 + random.nextDouble() - 0.5;
+            double approximate = Geodesy.equirectangular(lat1, lon1, lat2, lon2);
+            double reference = Geodesy.haversine(lat1, lon1, lat2, lon2);
+            assertTrue(Math.abs(approximate - reference) <= Geodesy.equirectangularErrorBound(approximate) + 1e-9);
+        }
+    }
+
+    @Test
+    public void longitudeDifferenceWrapsAroundTheAntimeridian() {
+        double reference = Geodesy.haversine(0, 179.9, 0, -179.9);
+        assertEquals(22239, reference, 1);
+        assertEquals(reference, Geodesy.equirectangular(0, 179.9, 0, -179.9), 0.01);
+        assertEquals(reference, Geodesy.vincenty(0, 179.9, 0, -179.9), 100);
+
+        Geodesy.LocalProjection projection = new Geodesy.LocalProjection(0, 179.9);
+        assertEquals(reference, projection.distance(0, -179.9), 0.01);
+        assertEquals(-179.9, projection.longitude(projection.east(-179.9)), 1e-9);
+
+        double[] lats = {0, 0}, lons = {179.9, -179.9}, out = new double[1];
+        Geodesy.equirectangularSegments(lats, lons, out, 2);
+        assertEquals(reference, out[0], 0.01);
+    }
+
+    @Test
+    public void batchKernelsMatchScalarMethods() {
+        Random random = new Random(3);
+        int count = 1000;
+        double[] lats = new double[count], lons = new double[count], out = new double[count];
+        for (int i = 0; i < count; i++) {
+            lats[i] = random.nextDouble() * 160 - 80;
+            lons[i] = random.nextDouble() * 360 - 180;
+        }
+
+        Geodesy.haversineSegments(lats, lons, out, count);
+        for (int i = 0; i + 1 < count; i++)
+            assertEquals(Geodesy.haversine(lats[i], lons[i], lats[i + 1], lons[i + 1]), out[i], 1e-6);
+
+        Geodesy.bearingSegments(lats, lons, out, count);
+        for (int i = 0; i + 1 < count; i++)
+            assertEquals(Geodesy.bearing(lats[i], lons[i], lats[i + 1], lons[i + 1]), out[i], 1e-9);
+
+        Geodesy.haversineFrom(lats[0], lons[0], lats, lons, out, count);
+        for (int i = 0; i < count; i++)
+            assertEquals(Geodesy.haversine(lats[0], lons[0], lats[i], lons[i]), out[i], 1e-6);
+    }
+
+    @Test
+    public void bearingPointsEast() {
+        assertEquals(90.0, Geodesy.bearing(0, 0, 0, 1), 1e-9);
+        assertEquals(270.0, Geodesy.bearing(0, 0, 0, -1), 1e-9);
+    }
+}
@@ -0,0 +1,75 @@
+package gr.nikolis.gpslib.aggregation;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import gr.nikolis.gpslib.Benchmark;
+
+/**
+ * Fixes per second of the aggregation on a 1M fix random walk across a city,
+ * at three zoom levels, with and without emitting the changed tiles every 1000 fixes.
+ */
+public class DensityAggregatorBenchmark {
+
+    private static final int COUNT = 1_000_000;
+    private static final double[] LATS = new double[COUNT];
+    private static final double[] LONS = new double[COUNT];
+
+    @BeforeClass
+    public static void createTrack() {
+        Random random = new Random(11);
+        double lat = 37.97, lon = 23.72;
+        for (int i = 0; i < COUNT; i++) {
+            lat += (random.nextDouble() - 0.5) * 2e-4;
+            lon += (random.nextDouble() - 0.5) * 2e-4;
+            LATS[i] = lat;
+            LONS[i] = lon;
+        }
+    }
+
+    @Test
+    public void add() {
+        final DensityAggregator aggregator = new DensityAggregator.Builder(12, 15, 17)
+                .setMaxDwellMillis(60_000)
+                .setExpectedCells(1 << 16)
+                .build();
+        Benchmark.nanosPerOperation("DensityAggregator.add, 3 zoom levels", COUNT, new Benchmark.Body() {
+            @Override
+            public double run() {
+                aggregator.reset();
+                for (int i = 0; i < COUNT; i++)
+                    aggregator.add(LATS[i], LONS[i], i * 1000L);
+                return aggregator.getCellCount();
+            }
+        });
+    }
+
+    @Test
+    public void addAndEmit() {
+        final DensityAggregator aggregator = new DensityAggregator.Builder(12, 15, 17)
+                .setMaxDwellMillis(60_000)
+                .setExpectedCells(1 << 16)
+                .build();
+        final long[] sum = new long[1];
+        final DensityAggregator.OnTileChangedListener listener = new DensityAggregator.OnTileChangedListener() {
+            @Override
+            public void onTileChanged(long quadKey, int fixes, long dwellMillis) {
+                sum[0] += fixes;
+            }
+        };
+        Benchmark.nanosPerOperation("DensityAggregator.add + emitChanged", COUNT, new Benchmark.Body() {
+            @Override
+            public double run() {
+                aggregator.reset();
+                for (int i = 0; i < COUNT; i++) {
+                    aggregator.add(LATS[i], LONS[i], i * 1000L);
+                    if (i % 1000 == 999)
+                        aggregator.emitChanged(listener);
+                }
+                return sum[0];
+            }
+        });
+    }
+}
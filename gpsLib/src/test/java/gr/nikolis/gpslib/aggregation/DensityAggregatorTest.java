@@ -0,0 +1,43 @@
+package gr.nikolis.gpslib.aggregation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DensityAggregatorTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDuplicateZoomLevels() {
+        new DensityAggregator.Builder(15, 15).build();
+    }
+
+    @Test
+    public void countsFixesAndDwellPerTile() {
+        DensityAggregator aggregator = new DensityAggregator.Builder(10, 15)
+                .setMaxDwellMillis(60_000)
+                .build();
+        aggregator.add(37.97, 23.72, 0);
+        aggregator.add(37.97, 23.72, 1_000);
+        aggregator.add(37.97, 23.72, 1_000_000); // gap capped at max dwell
+
+        final long[] totals = new long[3]; // tiles, fixes, dwell
+        int emitted = aggregator.emitChanged(new DensityAggregator.OnTileChangedListener() {
+            @Override
+            public void onTileChanged(long quadKey, int fixes, long dwellMillis) {
+                totals[0]++;
+                totals[1] += fixes;
+                totals[2] += dwellMillis;
+            }
+        });
+        assertEquals(2, emitted);
+        assertEquals(2, totals[0]);
+        assertEquals(6, totals[1]);
+        assertEquals(2 * 61_000, totals[2]);
+
+        assertEquals(0, aggregator.emitChanged(new DensityAggregator.OnTileChangedListener() {
+            @Override
+            public void onTileChanged(long quadKey, int fixes, long dwellMillis) {
+            }
+        }));
+    }
+}
@@ -0,0 +1,47 @@
+package gr.nikolis.gpslib.aggregation;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LongIntHashMapTest {
+
+    @Test
+    public void matchesHashMapThroughResizes() {
+        LongIntHashMap map = new LongIntHashMap();
+        Map<Long, Integer> reference = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            long key = random.nextInt(5000) - 100; // includes 0 and negative keys
+            int delta = random.nextInt(10);
+            map.addTo(key, delta);
+            Integer value = reference.get(key);
+            reference.put(key, (value == null ? 0 : value) + delta);
+        }
+        assertEquals(reference.size(), map.size());
+        for (Map.Entry<Long, Integer> entry : reference.entrySet())
+            assertEquals((int) entry.getValue(), map.get(entry.getKey()));
+    }
+
+    @Test
+    public void returnsMissingValueForAbsentKeys() {
+        LongIntHashMap map = new LongIntHashMap(4, -1);
+        assertEquals(-1, map.get(42));
+        assertEquals(-1, map.put(42, 7));
+        assertEquals(7, map.put(42, 8));
+        assertEquals(-1, map.get(0));
+        assertFalse(map.containsKey(0));
+        map.put(0, 3);
+        assertTrue(map.containsKey(0));
+        assertEquals(3, map.get(0));
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(-1, map.get(42));
+    }
+}
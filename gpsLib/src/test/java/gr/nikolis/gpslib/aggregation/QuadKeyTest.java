@@ -0,0 +1,40 @@
+package gr.nikolis.gpslib.aggregation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class QuadKeyTest {
+
+    @Test
+    public void encodesBingQuadKeys() {
+        // tile 3, 5 at zoom 3 is quadkey 213
+        assertEquals("213", QuadKey.toString(QuadKey.fromTile(3, 5, 3)));
+    }
+
+    @Test
+    public void decodesTiles() {
+        long key = QuadKey.fromTile(123456, 654321, 20);
+        assertEquals(20, QuadKey.zoom(key));
+        assertEquals(123456, QuadKey.tileX(key));
+        assertEquals(654321, QuadKey.tileY(key));
+    }
+
+    @Test
+    public void ancestorsMatchCoarserEncoding() {
+        double lat = 37.97, lon = 23.72;
+        long finest = QuadKey.encode(lat, lon, QuadKey.MAX_ZOOM);
+        for (int zoom = 1; zoom < QuadKey.MAX_ZOOM; zoom++) {
+            assertEquals(QuadKey.encode(lat, lon, zoom), QuadKey.ancestor(finest, zoom));
+            assertEquals(QuadKey.encode(lat, lon, zoom), QuadKey.parent(QuadKey.encode(lat, lon, zoom + 1)));
+        }
+    }
+
+    @Test
+    public void clampsToMercatorLimits() {
+        long north = QuadKey.encode(90, 0, 4);
+        assertEquals(0, QuadKey.tileY(north));
+        long south = QuadKey.encode(-90, 0, 4);
+        assertEquals(15, QuadKey.tileY(south));
+    }
+}
@@ -0,0 +1,115 @@
+package gr.nikolis.gpslib.batch;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TrackBatchProcessorTest {
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keepsTheSourceExtensionInOutputNames() throws IOException {
+        File input = folder.newFolder("in");
+        File output = new File(folder.getRoot(), "out");
+        write(new File(input, "a.csv"), "time,latitude,longitude\n1000,37.9,23.7\n");
+        write(new File(input, "a.gpx"), "<gpx><trk><trkseg><trkpt lat=\"37.9\" lon=\"23.7\"/></trkseg></trk></gpx>");
+
+        BatchReport report = new TrackBatchProcessor.Builder(input, output).build().run();
+
+        assertEquals(2, report.getFiles());
+        assertTrue(report.getFailedFiles().isEmpty());
+        String[] names = output.list();
+        Arrays.sort(names);
+        assertEquals(Arrays.asList("a.csv.csv", "a.gpx.csv"), Arrays.asList(names));
+    }
+
+    @Test
+    public void perCoreRateCountsOnlyBusyWorkers() throws IOException {
+        File input = folder.newFolder("in");
+        write(new File(input, "a.csv"), "1000,37.9,23.7\n2000,37.9,23.7\n");
+
+        BatchReport report = new TrackBatchProcessor.Builder(input, folder.newFolder("out"))
+                .setParallelism(8)
+                .build()
+                .run();
+
+        assertEquals(report.getFixesPerSecond(), report.getFixesPerSecondPerCore(), 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTheInputDirectoryAsOutput() throws IOException {
+        File input = folder.newFolder("in");
+        write(new File(input, "a.csv"), "1000,37.9,23.7\n");
+        new TrackBatchProcessor.Builder(input, new File(input, "../in")).build().run();
+    }
+
+    @Test
+    public void countsMalformedRowsAfterTheHeader() throws IOException {
+        File input = folder.newFolder("in");
+        write(new File(input, "a.csv"), "time,latitude,longitude\n1000,37.9,23.7\n+2000,37.9,23.7\n.5,37.9,23.7\n\n3000,37.9\n");
+
+        BatchReport report = new TrackBatchProcessor.Builder(input, folder.newFolder("out")).build().run();
+
+        assertEquals(1, report.getFixesRead());
+        assertEquals(3, report.getLinesSkipped());
+    }
+
+    @Test
+    public void failedFilesLeaveNoOutputAndNoCounts() throws IOException {
+        File input = folder.newFolder("in");
+        File output = folder.newFolder("out");
+        write(new File(input, "good.csv"), "1000,37.9,23.7\n2000,37.9,23.7\n");
+        write(new File(input, "bad.csv"), "1000,37.9,23.7\n-1,37.9,23.7\n");
+
+        BatchReport report = new TrackBatchProcessor.Builder(input, output)
+                .addStage(new FixStage.Factory() {
+                    @Override
+                    public FixStage create() {
+                        return new FixStage() {
+                            @Override
+                            public boolean process(@NonNull TrackFix fix) {
+                                if (fix.time < 0)
+                                    throw new IllegalStateException("Negative time");
+                                return true;
+                            }
+
+                            @Override
+                            public void finish() {
+                            }
+                        };
+                    }
+                })
+                .build()
+                .run();
+
+        assertEquals(Collections.singletonList(new File(input, "bad.csv")), report.getFailedFiles());
+        assertEquals(2, report.getFixesRead());
+        assertEquals(2, report.getFixesWritten());
+        assertFalse(new File(output, "bad.csv.csv").exists());
+        assertEquals(Collections.singletonList("good.csv.csv"), Arrays.asList(output.list()));
+    }
+
+    private static void write(@NonNull File file, @NonNull String content) throws IOException {
+        try (OutputStream stream = new FileOutputStream(file)) {
+            stream.write(content.getBytes(US_ASCII));
+        }
+    }
+}
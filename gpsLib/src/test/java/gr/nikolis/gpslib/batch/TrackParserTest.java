@@ -0,0 +1,150 @@
+package gr.nikolis.gpslib.batch;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TrackParserTest {
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+    private static final double KNOTS_TO_MPS = 1852.0 / 3600.0;
+
+    @Test
+    public void parsesGpxPoints() {
+        TrackParser parser = parser("<gpx><trk><trkseg>\n"
+                + "<trkpt lon='23.5' lat='-37.25'><ele>12.5</ele><time>2020-03-01T10:15:30.250+02:00</time></trkpt>\n"
+                + "<trkpt lat=\"1.0\" lon=\"-2.0\"><time>2020-03-01T08:15:30Z</time></trkpt>\n"
+                + "<trkpt lat=\"3.0\" lon=\"4.0\"/>\n"
+                + "<trkpt lat=\"north\" lon=\"4.0\"/>\n"
+                + "</trkseg></trk></gpx>");
+        List<TrackFix> fixes = parse(parser, TrackFormat.GPX);
+
+        assertEquals(3, fixes.size());
+        assertEquals(1, parser.getSkipped());
+
+        TrackFix first = fixes.get(0);
+        assertEquals(-37.25, first.latitude, 0);
+        assertEquals(23.5, first.longitude, 0);
+        assertEquals(12.5, first.altitude, 0);
+        // +02:00 is two hours ahead of UTC
+        assertEquals(utc(2020, 3, 1, 8, 15, 30) + 250, first.time);
+
+        TrackFix second = fixes.get(1);
+        assertEquals(1.0, second.latitude, 0);
+        assertEquals(-2.0, second.longitude, 0);
+        assertTrue(Double.isNaN(second.altitude));
+        assertEquals(utc(2020, 3, 1, 8, 15, 30), second.time);
+
+        TrackFix third = fixes.get(2);
+        assertEquals(3.0, third.latitude, 0);
+        assertEquals(4.0, third.longitude, 0);
+    }
+
+    @Test
+    public void parsesNmeaRmcSentences() {
+        TrackParser parser = parser("$GPGGA,123519,4807.038,N,01131.000,E,1,08,0.9,545.4,M,46.9,M,,*47\n"
+                + "$GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A\r\n"
+                + "$GNRMC,235959.50,A,3358.000,S,15112.000,W,0.0,,311299,,*02\n"
+                + "$GPRMC,000000,V,,,,,,,010100,,*31\n");
+        List<TrackFix> fixes = parse(parser, TrackFormat.NMEA);
+
+        assertEquals(2, fixes.size());
+        assertEquals(0, parser.getSkipped());
+
+        TrackFix north = fixes.get(0);
+        assertEquals(48 + 7.038 / 60, north.latitude, 1e-12);
+        assertEquals(11 + 31.0 / 60, north.longitude, 1e-12);
+        assertEquals(22.4 * KNOTS_TO_MPS, north.speed, 1e-5);
+        assertEquals(84.4f, north.bearing, 0);
+        assertEquals(utc(1994, 3, 23, 12, 35, 19), north.time);
+
+        TrackFix south = fixes.get(1);
+        assertEquals(-(33 + 58.0 / 60), south.latitude, 1e-12);
+        assertEquals(-(151 + 12.0 / 60), south.longitude, 1e-12);
+        assertEquals(0.0f, south.speed, 0);
+        assertTrue(Float.isNaN(south.bearing));
+        assertEquals(utc(1999, 12, 31, 23, 59, 59) + 500, south.time);
+    }
+
+    @Test
+    public void skipsSentencesWithAWrongChecksum() {
+        TrackParser parser = parser("$GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*00\n"
+                + "$GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6\n"
+                + "$GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6a\n");
+        List<TrackFix> fixes = parse(parser, TrackFormat.NMEA);
+
+        // lower case hex digits are valid
+        assertEquals(1, fixes.size());
+        assertEquals(2, parser.getSkipped());
+    }
+
+    @Test
+    public void parsesDecimalsLikeTheJdk() {
+        Random random = new Random(3);
+        StringBuilder csv = new StringBuilder();
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            // 1 to 18 significant digits, so both the fast path and the fallback are used
+            int digits = 1 + random.nextInt(18);
+            int decimals = random.nextInt(digits + 1);
+            StringBuilder value = new StringBuilder();
+            if (random.nextBoolean())
+                value.append('-');
+            for (int d = 0; d < digits; d++) {
+                if (d == digits - decimals)
+                    value.append(d == 0 ? "0." : ".");
+                value.append((char) ('0' + random.nextInt(10)));
+            }
+            values.add(value.toString());
+            csv.append(i).append(',').append(value).append(",0\n");
+        }
+        List<TrackFix> fixes = parse(parser(csv.toString()), TrackFormat.CSV);
+
+        assertEquals(values.size(), fixes.size());
+        for (int i = 0; i < values.size(); i++)
+            assertEquals(values.get(i), Double.parseDouble(values.get(i)), fixes.get(i).latitude, 0);
+    }
+
+    private static TrackParser parser(@NonNull String content) {
+        return new TrackParser(ByteBuffer.wrap(content.getBytes(US_ASCII)));
+    }
+
+    private static List<TrackFix> parse(@NonNull TrackParser parser, @NonNull TrackFormat format) {
+        final List<TrackFix> fixes = new ArrayList<>();
+        parser.parse(format, new TrackParser.Sink() {
+            @Override
+            public void accept(@NonNull TrackFix fix) {
+                TrackFix copy = new TrackFix();
+                copy.time = fix.time;
+                copy.latitude = fix.latitude;
+                copy.longitude = fix.longitude;
+                copy.altitude = fix.altitude;
+                copy.speed = fix.speed;
+                copy.bearing = fix.bearing;
+                copy.accuracy = fix.accuracy;
+                fixes.add(copy);
+            }
+        });
+        return fixes;
+    }
+
+    private static long utc(int year, int month, int day, int hour, int minute, int second) {
+        Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"), Locale.US);
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute, second);
+        return calendar.getTimeInMillis();
+    }
+}
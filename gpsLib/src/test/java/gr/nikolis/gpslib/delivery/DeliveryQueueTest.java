@@ -0,0 +1,145 @@
+package gr.nikolis.gpslib.delivery;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DeliveryQueueTest {
+
+    @Test
+    public void dropOldestKeepsTheNewestInOrder() {
+        DeliveryQueue<Integer> queue = new DeliveryQueue<>(DeliveryPolicy.DROP_OLDEST, 4, 1);
+        for (int i = 1; i <= 10; i++)
+            queue.offer(i);
+
+        assertEquals(Arrays.asList(7, 8, 9, 10), drain(queue));
+        assertEquals(6, queue.getDropped());
+        assertEquals(0, queue.getConflated());
+    }
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() {
+        DeliveryQueue<Integer> queue = new DeliveryQueue<>(DeliveryPolicy.DROP_OLDEST, 3, 1);
+        for (int i = 1; i <= 4; i++)
+            queue.offer(i);
+
+        assertEquals(Arrays.asList(1, 2, 3, 4), drain(queue));
+        assertEquals(0, queue.getDropped());
+    }
+
+    @Test
+    public void latestOnlyConflates() {
+        DeliveryQueue<Integer> queue = new DeliveryQueue<>(DeliveryPolicy.LATEST_ONLY, 16, 1);
+        for (int i = 1; i <= 5; i++)
+            queue.offer(i);
+
+        assertEquals(Arrays.asList(5), drain(queue));
+        assertEquals(4, queue.getConflated());
+        assertEquals(0, queue.getDropped());
+    }
+
+    @Test
+    public void sampleEveryNthKeepsEveryNth() {
+        DeliveryQueue<Integer> queue = new DeliveryQueue<>(DeliveryPolicy.SAMPLE_EVERY_NTH, 16, 3);
+        for (int i = 1; i <= 10; i++)
+            queue.offer(i);
+
+        assertEquals(Arrays.asList(3, 6, 9), drain(queue));
+        assertEquals(7, queue.getConflated());
+        assertEquals(0, queue.getDropped());
+    }
+
+    @Test
+    public void blockKeepsEverythingInOrder() {
+        DeliveryQueue<Integer> queue = new DeliveryQueue<>(DeliveryPolicy.BLOCK, 4, 1);
+        for (int i = 1; i <= 4; i++)
+            queue.offer(i);
+
+        assertEquals(Arrays.asList(1, 2, 3, 4), drain(queue));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void closeReleasesABlockedProducer() throws InterruptedException {
+        final DeliveryQueue<Integer> queue = new DeliveryQueue<>(DeliveryPolicy.BLOCK, 2, 1);
+        queue.offer(1);
+        queue.offer(2);
+        final CountDownLatch returned = new CountDownLatch(1);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(3);
+                returned.countDown();
+            }
+        });
+        producer.start();
+
+        assertFalse("The producer must wait for space", returned.await(50, TimeUnit.MILLISECONDS));
+        queue.close();
+        assertTrue("close() must release the producer", returned.await(1, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1, 2), drain(queue));
+    }
+
+    @Test
+    public void concurrentProducerAndConsumerAccountForEveryElement() throws InterruptedException {
+        for (DeliveryPolicy policy : DeliveryPolicy.values())
+            stress(policy, 60_000); // divisible by the sample rate, so the last element is kept
+    }
+
+    private static void stress(DeliveryPolicy policy, final int count) throws InterruptedException {
+        final DeliveryQueue<Integer> queue = new DeliveryQueue<>(policy, 8, 3);
+        final boolean[] done = new boolean[1];
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++)
+                    queue.offer(i);
+                synchronized (done) {
+                    done[0] = true;
+                }
+            }
+        });
+        producer.start();
+
+        long delivered = 0;
+        int last = -1;
+        while (true) {
+            Integer element = queue.poll();
+            if (element != null) {
+                assertTrue(policy + ": " + element + " after " + last, element > last);
+                last = element;
+                delivered++;
+                continue;
+            }
+            synchronized (done) {
+                if (done[0] && queue.isEmpty())
+                    break;
+            }
+        }
+        producer.join();
+
+        assertEquals(policy.toString(), count, delivered + queue.getDropped() + queue.getConflated());
+        if (policy == DeliveryPolicy.BLOCK)
+            assertEquals(count, delivered);
+        else
+            assertEquals(policy.toString(), count - 1, last);
+    }
+
+    private static List<Integer> drain(DeliveryQueue<Integer> queue) {
+        List<Integer> elements = new ArrayList<>();
+        Integer element;
+        while ((element = queue.poll()) != null)
+            elements.add(element);
+        assertNull(queue.poll());
+        return elements;
+    }
+}
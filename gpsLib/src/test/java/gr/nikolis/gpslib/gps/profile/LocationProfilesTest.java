@@ -0,0 +1,65 @@
+package gr.nikolis.gpslib.gps.profile;
+
+import com.mapbox.android.core.location.LocationEngineRequest;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class LocationProfilesTest {
+
+    @Test
+    public void loadsNamedProfiles() throws IOException {
+        LocationProfiles.load(stream("walking.priority=balanced\nwalking.interval=5000\nwalking.displacement=5.5\n"));
+
+        LocationProfile walking = LocationProfiles.get("walking");
+        LocationProfile defaults = LocationProfiles.get(LocationProfiles.DEFAULT);
+        assertEquals("walking", walking.getName());
+        assertEquals(LocationEngineRequest.PRIORITY_BALANCED_POWER_ACCURACY, walking.getPriority());
+        assertEquals(5000, walking.getInterval());
+        assertEquals(5.5f, walking.getDisplacement(), 0);
+        assertEquals(defaults.getFastestInterval(), walking.getFastestInterval());
+    }
+
+    @Test
+    public void rejectsUnknownProperties() throws IOException {
+        try {
+            LocationProfiles.load(stream("running.interval=1000\nrunning.fastest_interval=200\n"));
+            fail("A misspelled property must be rejected");
+        } catch (IllegalArgumentException expected) {
+            assertNull(LocationProfiles.get("running"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBadValues() throws IOException {
+        LocationProfiles.load(stream("cycling.interval=fast\n"));
+    }
+
+    @Test
+    public void rejectsForeignPriorities() throws IOException {
+        try {
+            // 102 is the Google balanced priority
+            LocationProfiles.load(stream("hiking.priority=102\n"));
+            fail("A priority outside the LocationEngineRequest constants must be rejected");
+        } catch (IllegalArgumentException expected) {
+            assertNull(LocationProfiles.get("hiking"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderRejectsForeignPriorities() {
+        new LocationProfile.Builder("hiking").setPriority(102).build();
+    }
+
+    private static InputStream stream(String properties) {
+        return new ByteArrayInputStream(properties.getBytes(Charset.forName("ISO-8859-1")));
+    }
+}
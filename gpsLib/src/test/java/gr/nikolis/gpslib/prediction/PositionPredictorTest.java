@@ -0,0 +1,105 @@
+package gr.nikolis.gpslib.prediction;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import gr.nikolis.gpslib.Geodesy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PositionPredictorTest {
+
+    private static final long SECOND = 1_000_000_000L;
+    private static final double LAT = 37.97, LON = 23.72;
+
+    @Test
+    public void coastsToAStop() {
+        PositionPredictor predictor = new PositionPredictor.Builder()
+                .setSpeedDecay(3000)
+                .setMaxExtrapolation(60_000)
+                .build();
+        predictor.update(LAT, LON, SECOND, 10.0f, 90.0f, 5.0f, 1.0f);
+        PredictedPosition position = new PredictedPosition();
+
+        double previous = 0;
+        for (int second = 1; second <= 60; second++) {
+            assertTrue(predictor.positionAt(SECOND + second * SECOND, position));
+            double distance = Geodesy.haversine(LAT, LON, position.getLatitude(), position.getLongitude());
+            assertTrue("The marker must not move back", distance >= previous);
+            previous = distance;
+        }
+        // the decaying speed covers speed * time constant in total
+        assertEquals(30.0, previous, 0.1);
+        assertEquals(0.0f, position.getSpeed(), 1e-6);
+        assertEquals(LAT, position.getLatitude(), 1e-6);
+        assertTrue(position.getLongitude() > LON);
+
+        // after the maximum extrapolation only the radius grows
+        predictor.positionAt(SECOND + 120 * SECOND, position);
+        assertEquals(30.0, Geodesy.haversine(LAT, LON, position.getLatitude(), position.getLongitude()), 0.1);
+    }
+
+    @Test
+    public void staysPutWithoutABearing() {
+        PositionPredictor predictor = new PositionPredictor.Builder().build();
+        predictor.update(LAT, LON, SECOND, 10.0f, Float.NaN, 5.0f, 1.0f);
+        PredictedPosition position = new PredictedPosition();
+
+        predictor.positionAt(3 * SECOND, position);
+        assertFalse(position.hasBearing());
+        assertEquals(LAT, position.getLatitude(), 0);
+        assertEquals(LON, position.getLongitude(), 0);
+        // accuracy, speed accuracy, acceleration and the distance it could have travelled
+        double travelled = 10.0 * 3.0 * (1 - Math.exp(-2.0 / 3.0));
+        assertEquals(5.0 + 2.0 + 0.5 * 2.0 * 4.0 + travelled, position.getConfidenceRadius(), 1e-3);
+
+        // a fix 20m north gives a bearing, but no turn rate from the unknown one
+        double north = new Geodesy.LocalProjection(LAT, LON).latitude(20.0);
+        predictor.update(north, LON, 2 * SECOND, 10.0f, Float.NaN, 5.0f, 1.0f);
+        predictor.positionAt(4 * SECOND, position);
+        assertTrue(position.hasBearing());
+        assertEquals(0.0f, Geodesy.normalizeBearing(position.getBearing() + 180.0) - 180.0, 1e-3);
+        assertTrue(position.getLatitude() > north);
+    }
+
+    @Test
+    public void clampsTheTurnRate() {
+        PositionPredictor predictor = new PositionPredictor.Builder()
+                .setMaxTurnRate(45.0f)
+                .setTurnDecay(1000)
+                .build();
+        double north = new Geodesy.LocalProjection(LAT, LON).latitude(10.0);
+        predictor.update(LAT, LON, SECOND, 10.0f, 0.0f, 5.0f, 1.0f);
+        // 90 degrees in one second, twice the maximum
+        predictor.update(north, LON, 2 * SECOND, 10.0f, 90.0f, 5.0f, 1.0f);
+        PredictedPosition position = new PredictedPosition();
+
+        predictor.positionAt(2 * SECOND, position);
+        assertEquals(90.0f, position.getBearing(), 1e-3);
+        predictor.positionAt(7 * SECOND, position);
+        assertEquals(90.0 + 45.0 * (1 - Math.exp(-5.0)), position.getBearing(), 1e-3);
+    }
+
+    @Test
+    public void positionAtDoesNotAllocate() {
+        PositionPredictor predictor = new PositionPredictor.Builder().build();
+        predictor.update(LAT, LON, SECOND, 10.0f, 0.0f, 5.0f, 1.0f);
+        predictor.update(LAT + 1e-4, LON, 2 * SECOND, 10.0f, 10.0f, 5.0f, 1.0f);
+        PredictedPosition position = new PredictedPosition();
+        for (int i = 0; i < 100_000; i++)
+            predictor.positionAt(2 * SECOND + i * 16_000_000L, position);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 100_000; i++)
+            predictor.positionAt(2 * SECOND + i * 16_000_000L, position);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        // a single object per call would be megabytes, allow for the measurement itself
+        assertTrue("allocated " + allocated + " bytes", allocated < 4096);
+    }
+}
@@ -0,0 +1,43 @@
+package gr.nikolis.gpslib.staypoint;
+
+import org.junit.Test;
+
+import gr.nikolis.gpslib.Geodesy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PlaceIndexTest {
+
+    private static final Geodesy.LocalProjection ORIGIN = new Geodesy.LocalProjection(37.97, 23.72);
+
+    @Test
+    public void findsPlacesAfterTheirCentroidDrifted() {
+        PlaceIndex index = new PlaceIndex(100);
+        Place place = index.resolve(ORIGIN.latitude(0), ORIGIN.longitude(0));
+        index.addVisit(place, place.getLatitude(), place.getLongitude(), 0);
+
+        // every visit is 95m east of the centroid, so the centroid crosses several cells
+        for (int i = 0; i < 60; i++) {
+            double lat = place.getLatitude();
+            double lon = ORIGIN.longitude(ORIGIN.east(place.getLongitude()) + 95);
+            assertSame("visit " + i, place, index.resolve(lat, lon));
+            index.addVisit(place, lat, lon, 0);
+        }
+        assertEquals(1, index.getPlaces().size());
+        assertTrue(ORIGIN.east(place.getLongitude()) > 300);
+    }
+
+    @Test
+    public void keepsDistantPlacesApart() {
+        PlaceIndex index = new PlaceIndex(100);
+        Place first = index.resolve(ORIGIN.latitude(0), ORIGIN.longitude(0));
+        Place second = index.resolve(ORIGIN.latitude(0), ORIGIN.longitude(150));
+
+        assertNotSame(first, second);
+        assertSame(first, index.resolve(ORIGIN.latitude(10), ORIGIN.longitude(-10)));
+        assertSame(second, index.resolve(ORIGIN.latitude(-10), ORIGIN.longitude(160)));
+    }
+}
@@ -0,0 +1,80 @@
+package gr.nikolis.gpslib.staypoint;
+
+import androidx.annotation.NonNull;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import gr.nikolis.gpslib.Benchmark;
+import gr.nikolis.gpslib.Geodesy;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Replays two months of 1 Hz fixes: every day home, a commute to work, the gym and back,
+ * with 10m noise and a rare jitter spike. One synthetic day is repeated with shifted times.
+ */
+public class StayPointDetectorBenchmark {
+
+    private static final int DAY_SECONDS = 24 * 60 * 60;
+    private static final int DAYS = 60;
+    private static final double[] LATS = new double[DAY_SECONDS];
+    private static final double[] LONS = new double[DAY_SECONDS];
+
+    @BeforeClass
+    public static void createDay() {
+        Geodesy.LocalProjection home = new Geodesy.LocalProjection(37.97, 23.72);
+        // seconds of the day and the east, north position in meters reached then
+        double[][] plan = {
+                {0, 0, 0}, {8 * 3600, 0, 0},
+                {8.5 * 3600, 10_000, 0}, {17 * 3600, 10_000, 0},
+                {17.5 * 3600, 2_000, 2_000}, {18.5 * 3600, 2_000, 2_000},
+                {18.75 * 3600, 0, 0}, {DAY_SECONDS, 0, 0}};
+        Random random = new Random(5);
+        int leg = 0;
+        for (int second = 0; second < DAY_SECONDS; second++) {
+            while (second > plan[leg + 1][0])
+                leg++;
+            double f = (second - plan[leg][0]) / (plan[leg + 1][0] - plan[leg][0]);
+            double east = plan[leg][1] + f * (plan[leg + 1][1] - plan[leg][1]) + random.nextGaussian() * 10;
+            double north = plan[leg][2] + f * (plan[leg + 1][2] - plan[leg][2]) + random.nextGaussian() * 10;
+            if (random.nextInt(500) == 0)
+                east += 300;
+            LATS[second] = home.latitude(north);
+            LONS[second] = home.longitude(east);
+        }
+    }
+
+    @Test
+    public void twoMonthsAtOneHertz() {
+        final int[] departures = new int[1];
+        final StayPointDetector[] detector = new StayPointDetector[1];
+        Benchmark.nanosPerOperation("StayPointDetector.add, 2 months 1 Hz", (long) DAYS * DAY_SECONDS, new Benchmark.Body() {
+            @Override
+            public double run() {
+                departures[0] = 0;
+                detector[0] = new StayPointDetector.Builder(new StayPointDetector.OnStayPointListener() {
+                    @Override
+                    public void onArrival(@NonNull StayPoint stayPoint) {
+                    }
+
+                    @Override
+                    public void onDeparture(@NonNull StayPoint stayPoint) {
+                        departures[0]++;
+                    }
+                }).build();
+                for (int day = 0; day < DAYS; day++) {
+                    long dayStart = day * DAY_SECONDS * 1000L;
+                    for (int second = 0; second < DAY_SECONDS; second++)
+                        detector[0].add(LATS[second], LONS[second], dayStart + second * 1000L);
+                }
+                detector[0].flush();
+                return departures[0];
+            }
+        });
+        // home, work and gym, whatever the speed
+        assertEquals(3, detector[0].getPlaces().size());
+    }
+}
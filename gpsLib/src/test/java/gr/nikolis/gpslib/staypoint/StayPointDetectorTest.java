@@ -0,0 +1,134 @@
+package gr.nikolis.gpslib.staypoint;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import gr.nikolis.gpslib.Geodesy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StayPointDetectorTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final Geodesy.LocalProjection HOME = new Geodesy.LocalProjection(37.97, 23.72);
+
+    private final List<StayPoint> arrivals = new ArrayList<>();
+    private final List<StayPoint> departures = new ArrayList<>();
+    private StayPointDetector detector;
+
+    @Before
+    public void createDetector() {
+        // 50m clusters, 5 minute stays, 30 minute gaps, 3 departure fixes, 100m places
+        detector = new StayPointDetector.Builder(new StayPointDetector.OnStayPointListener() {
+            @Override
+            public void onArrival(@NonNull StayPoint stayPoint) {
+                arrivals.add(stayPoint);
+            }
+
+            @Override
+            public void onDeparture(@NonNull StayPoint stayPoint) {
+                departures.add(stayPoint);
+            }
+        }).build();
+    }
+
+    @Test
+    public void arrivesAfterTheTimeThreshold() {
+        for (int minute = 0; minute < 5; minute++)
+            add(minute % 2 * 10, 0, minute * MINUTE);
+        assertTrue(arrivals.isEmpty());
+        assertFalse(detector.isStaying());
+
+        add(5, 5, 5 * MINUTE);
+        assertEquals(1, arrivals.size());
+        assertTrue(detector.isStaying());
+        StayPoint arrival = arrivals.get(0);
+        assertEquals(0, arrival.getArrivalTime());
+        assertEquals(5 * MINUTE, arrival.getDepartureTime());
+        assertEquals(6, arrival.getFixes());
+    }
+
+    @Test
+    public void aJitterSpikeDoesNotEndTheStay() {
+        stay(0, 0, 0, 10);
+        add(500, 0, 10 * MINUTE);
+        add(0, 0, 11 * MINUTE);
+        assertTrue(departures.isEmpty());
+        assertTrue(detector.isStaying());
+
+        detector.flush();
+        assertEquals(1, departures.size());
+        // the spike is not part of the stay
+        assertEquals(11, departures.get(0).getFixes());
+        assertEquals(11 * MINUTE, departures.get(0).getDepartureTime());
+    }
+
+    @Test
+    public void departsAfterConsecutiveOutliersThatSeedTheNextCluster() {
+        stay(0, 0, 0, 10);
+        add(1000, 0, 10 * MINUTE);
+        add(1000, 10, 11 * MINUTE);
+        assertTrue(departures.isEmpty());
+        add(1010, 0, 12 * MINUTE);
+        assertEquals(1, departures.size());
+        assertEquals(9 * MINUTE, departures.get(0).getDepartureTime());
+
+        stay(1000, 0, 13 * MINUTE, 3);
+        assertEquals(2, arrivals.size());
+        StayPoint next = arrivals.get(1);
+        // the first outlier is the start of the next stay
+        assertEquals(10 * MINUTE, next.getArrivalTime());
+        assertEquals(6, next.getFixes());
+        assertTrue(next.getPlace() != departures.get(0).getPlace());
+    }
+
+    @Test
+    public void aLongGapSplitsTheStay() {
+        stay(0, 0, 0, 10);
+        add(0, 0, 9 * MINUTE + 31 * MINUTE);
+        assertEquals(1, departures.size());
+        assertEquals(9 * MINUTE, departures.get(0).getDepartureTime());
+        assertFalse(detector.isStaying());
+
+        stay(0, 0, 41 * MINUTE, 5);
+        assertEquals(2, arrivals.size());
+        assertSame(arrivals.get(0).getPlace(), arrivals.get(1).getPlace());
+    }
+
+    @Test
+    public void repeatVisitsMergeIntoOnePlace() {
+        stay(0, 0, 0, 10);
+        for (int minute = 10; minute < 20; minute++)
+            add(minute * 300, 0, minute * MINUTE);
+        stay(30, -20, 20 * MINUTE, 10);
+        detector.flush();
+
+        List<Place> places = detector.getPlaces();
+        assertEquals(1, places.size());
+        Place home = places.get(0);
+        assertEquals(2, home.getVisits());
+        assertEquals(18 * MINUTE, home.getTotalDwellMillis());
+        assertEquals(15.0, HOME.east(home.getLongitude()), 1e-6);
+        assertEquals(-10.0, HOME.north(home.getLatitude()), 1e-6);
+    }
+
+    /**
+     * One fix a minute at the point
+     */
+    private void stay(double east, double north, long from, int minutes) {
+        for (int minute = 0; minute < minutes; minute++)
+            add(east, north, from + minute * MINUTE);
+    }
+
+    private void add(double east, double north, long time) {
+        detector.add(HOME.latitude(north), HOME.longitude(east), time);
+    }
+}